@@ -30,22 +30,23 @@ package com.allantaborda.jmp3dec.decoder;
 /**
  * Implementation of Bit Reservoir for Layer III.
  * <p>
- * The implementation stores single bits as a word in the buffer. If a bit is set, the corresponding word in the buffer will be non-zero. If a bit is
- * clear, the corresponding word is zero. Although this may seem waseful, this can be a factor of two quicker than packing 8 bits to a byte and extracting.
+ * The bits are packed into a byte ring buffer and read through a 64 bit accumulator holding the next bits of the stream, most significant bit first.
+ * The read position is derived from the total number of bits read, so rewinding only needs to drop the accumulator.
  */
 // REVIEW: there is no range checking, so buffer underflow or overflow can silently occur.
 final class BitReserve{
-	/** Size of the internal buffer to store the reserved bits. Must be a power of 2. And x8, as each bit is stored as a single entry. */
-	private static final int BUFSIZE = 32768;
+	/** Size of the internal buffer to store the reserved bytes. Must be a power of 2. */
+	private static final int BUFSIZE = 4096;
 	/** Mask that can be used to quickly implement the modulus operation on BUFSIZE. */
 	private static final int BUFSIZE_MASK = BUFSIZE - 1;
-	private int offset, totbit, buf_byte_idx;
-	private final int[] buf = new int[BUFSIZE];
+	private int offset, totbit, accbits;
+	private long acc;
+	private final byte[] buf = new byte[BUFSIZE];
 
 	BitReserve(){
 		offset = 0;
 		totbit = 0;
-		buf_byte_idx = 0;
+		accbits = 0;
 	}
 
 	/** Return totbit Field. */
@@ -55,26 +56,36 @@ final class BitReserve{
 
 	/**
 	 * Read a number bits from the bit stream.
-	 * @param N The number of
+	 * @param N The number of bits, at most 32.
 	 */
 	public int hgetbits(int N){
+		if(accbits < N) refill();
+		// Shifted in two steps, so N = 0 returns 0.
+		int val = (int)((acc >>> 1) >>> (63 - N));
+		acc <<= N;
+		accbits -= N;
 		totbit += N;
-		int val = 0;
-		int pos = buf_byte_idx;
-		if(pos + N < BUFSIZE){
-			while(N-- > 0){
-				val <<= 1;
-				val |= ((buf[pos++] != 0) ? 1 : 0);
-			}
+		return val;
+	}
+
+	/**
+	 * Read a number of bits from the bit stream without advancing the read position.
+	 * @param N The number of bits to look ahead, at most 32.
+	 */
+	public int hpeekbits(int N){
+		if(accbits < N) refill();
+		return (int)((acc >>> 1) >>> (63 - N));
+	}
+
+	/** Skip N bits in the bit stream. */
+	public void hskipbits(int N){
+		if(N < accbits){
+			acc <<= N;
+			accbits -= N;
 		}else{
-			while(N-- > 0){
-				val <<= 1;
-				val |= ((buf[pos] != 0) ? 1 : 0);
-				pos = (pos + 1) & BUFSIZE_MASK;
-			}
+			accbits = 0;
 		}
-		buf_byte_idx = pos;
-		return val;
+		totbit += N;
 	}
 
 	/**
@@ -82,38 +93,40 @@ final class BitReserve{
 	 * @returns 0 if next bit is reset, or 1 if next bit is set.
 	 */
 	public int hget1bit(){
+		if(accbits == 0) refill();
+		int val = (int)(acc >>> 63);
+		acc <<= 1;
+		accbits--;
 		totbit++;
-		int val = buf[buf_byte_idx];
-		buf_byte_idx = (buf_byte_idx + 1) & BUFSIZE_MASK;
 		return val;
 	}
 
 	/** Write 8 bits into the bit stream. */
 	public void hputbuf(int val){
-		int ofs = offset;
-		buf[ofs++] = val & 0x80;
-		buf[ofs++] = val & 0x40;
-		buf[ofs++] = val & 0x20;
-		buf[ofs++] = val & 0x10;
-		buf[ofs++] = val & 0x08;
-		buf[ofs++] = val & 0x04;
-		buf[ofs++] = val & 0x02;
-		buf[ofs++] = val & 0x01;
-		offset = ofs == BUFSIZE ? 0 : ofs;
+		buf[offset] = (byte)val;
+		offset = (offset + 1) & BUFSIZE_MASK;
+		accbits = 0;
 	}
 
 	/** Rewind N bits in Stream. */
 	public void rewindNbits(int N){
 		totbit -= N;
-		buf_byte_idx -= N;
-		if(buf_byte_idx < 0) buf_byte_idx += BUFSIZE;
+		accbits = 0;
 	}
 
 	/** Rewind N bytes in Stream. */
 	public void rewindNbytes(int N){
-		int bits = (N << 3);
-		totbit -= bits;
-		buf_byte_idx -= bits;
-		if(buf_byte_idx < 0) buf_byte_idx += BUFSIZE;
+		totbit -= (N << 3);
+		accbits = 0;
+	}
+
+	/** Loads the accumulator with the 8 bytes at the read position, dropping the bits already read from the first one. */
+	private void refill(){
+		int pos = totbit >> 3;
+		long a = 0;
+		for(int i = 0; i < 8; i++) a = (a << 8) | (buf[(pos + i) & BUFSIZE_MASK] & 0xff);
+		int skip = totbit & 7;
+		acc = a << skip;
+		accbits = 64 - skip;
 	}
 }
\ No newline at end of file
@@ -35,11 +35,10 @@
 
 package com.allantaborda.jmp3dec.decoder;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 /**
@@ -54,25 +53,28 @@ public final class Bitstream implements BitstreamErrors{
 	// max. 1730 bytes per frame: 144 * 384kbit/s / 32000 Hz + 2 Bytes CRC
 	/** Maximum size of the frame buffer. */
 	private static final int BUFFER_INT_SIZE = 433;
-	/** The frame buffer that holds the data for the current frame. */
-	private final int[] framebuffer = new int[BUFFER_INT_SIZE];
 	/** Number of valid bytes in the frame buffer. */
 	private int framesize;
-	/** The bytes read from the stream. */
-	private byte[] frame_bytes = new byte[BUFFER_INT_SIZE * 4];
-	/** Index into <code>framebuffer</code> where the next bits are retrieved. */
-	private int wordpointer;
-	/** Number (0-31, from MSB to LSB) of next bit for get_bits(). */
-	private int bitindex;
+	/** The bytes of the first frame, given to the VBR header parser. */
+	private final byte[] frame_bytes = new byte[BUFFER_INT_SIZE * 4];
+	/** Position in the source of the current frame and number of its bytes actually read. */
+	private long framepos;
+	private int frameread;
+	/** View of the current frame in the source buffer, from <code>framestart</code> to <code>frameend</code>. */
+	private ByteBuffer frame = ByteBuffer.allocate(0);
+	private int framestart, frameend;
+	/** Index into <code>frame</code> of the next word to be loaded into the bit cache, or -1 if the frame was not parsed. */
+	private int bytepointer;
+	/** Bits of the current frame not yet returned by get_bits(), aligned to the MSB. */
+	private long bitcache;
+	/** Number of valid bits in <code>bitcache</code>. */
+	private int cachebits;
 	/** The current specified syncword. */
 	private int syncword;
 	/** Audio header position in stream. */
 	private int header_pos = 0;
 	private boolean single_ch_mode;
-	private final int bitmask[] = { 0, // dummy
-			0x00000001, 0x00000003, 0x00000007, 0x0000000F, 0x0000001F, 0x0000003F, 0x0000007F, 0x000000FF, 0x000001FF,
-			0x000003FF, 0x000007FF, 0x00000FFF, 0x00001FFF, 0x00003FFF, 0x00007FFF, 0x0000FFFF, 0x0001FFFF };
-	private final PushbackInputStream source;
+	private final FrameSource source;
 	private final Header header = new Header();
 	private final byte syncbuf[] = new byte[4];
 	private Crc16[] crc = new Crc16[1];
@@ -84,10 +86,17 @@ public final class Bitstream implements BitstreamErrors{
 	 * @param in The InputStream to read from.
 	 */
 	public Bitstream(InputStream in){
-		in = new BufferedInputStream(Objects.requireNonNull(in));
-		loadID3v2(in);
+		this(FrameSource.of(Objects.requireNonNull(in)));
+	}
+
+	/**
+	 * Construct a Bitstream that reads data from a given FrameSource.
+	 * @param source The FrameSource to read from.
+	 */
+	public Bitstream(FrameSource source){
+		this.source = Objects.requireNonNull(source);
+		loadID3v2();
 		firstframe = true;
-		source = new PushbackInputStream(in, BUFFER_INT_SIZE * 4);
 		closeFrame();
 	}
 
@@ -99,23 +108,49 @@ public final class Bitstream implements BitstreamErrors{
 		return header_pos;
 	}
 
+	/** Returns the header of the last frame read, which also keeps the VBR info of the first frame. */
+	Header header(){
+		return header;
+	}
+
+	/**
+	 * Return position of the header of the last frame read.
+	 * @return Offset of the frame header from the start of the source.
+	 */
+	public long frame_pos(){
+		return framepos - 4;
+	}
+
+	/**
+	 * Moves to a frame header, such as one recorded in a <code>FrameIndex</code>. The decoder must be notified of the seek.
+	 * @param position Offset of the frame header from the start of the source.
+	 * @throws BitstreamException If the source can't move to the position.
+	 */
+	public void seek(long position) throws BitstreamException{
+		closeFrame();
+		try{
+			source.seek(position);
+		}catch(IOException ex){
+			throw newBitstreamException(STREAM_ERROR, ex);
+		}
+	}
+
 	/**
 	 * Load ID3v2 frames.
-	 * @param in MP3 InputStream.
 	 * @author JavaZOOM
 	 */
-	private void loadID3v2(InputStream in){
+	private void loadID3v2(){
 		int size = -1;
+		long start = source.position();
 		try{
 			// Read ID3v2 header (10 bytes).
-			in.mark(10);
-			size = readID3v2Header(in);
+			size = readID3v2Header(source);
 			header_pos = size;
 		}catch(IOException e) {
 		}finally{
 			try{
 				// Unread ID3v2 header (10 bytes).
-				in.reset();
+				source.unread((int)(source.position() - start));
 			}catch(IOException e){
 			}
 		}
@@ -123,20 +158,20 @@ public final class Bitstream implements BitstreamErrors{
 		try{
 			if(size > 0){
 				rawid3v2 = new byte[size];
-				in.read(rawid3v2, 0, rawid3v2.length);
+				readBytes(rawid3v2, 0, rawid3v2.length);
 			}
-		}catch(IOException e){
+		}catch(BitstreamException e){
 		}
 	}
 
 	/**
 	 * Parse ID3v2 tag header to find out size of ID3v2 frames.
-	 * @param in MP3 InputStream.
+	 * @param in MP3 FrameSource.
 	 * @return size of ID3v2 frames + header.
 	 * @throws IOException If an I/O error occourrs.
 	 * @author JavaZOOM
 	 */
-	private int readID3v2Header(InputStream in) throws IOException{
+	private int readID3v2Header(FrameSource in) throws IOException{
 		byte[] id3header = new byte[4];
 		int size = -10;
 		in.read(id3header, 0, 3);
@@ -182,6 +217,7 @@ public final class Bitstream implements BitstreamErrors{
 			result = readNextFrame();
 			// E.B, Parse VBR (if any) first frame.
 			if(firstframe) {
+				for(int i = 0, n = Math.min(frameend - framestart, frame_bytes.length); i < n; i++) frame_bytes[i] = frame.get(framestart + i);
 				result.parseVBR(frame_bytes);
 				firstframe = false;
 			}
@@ -231,9 +267,9 @@ public final class Bitstream implements BitstreamErrors{
 	 */
 	// REVIEW: add new error codes for this.
 	public void unreadFrame() throws BitstreamException{
-		if(wordpointer == -1 && bitindex == -1 && framesize > 0){
+		if(bytepointer == -1 && framesize > 0){
 			try{
-				source.unread(frame_bytes, 0, framesize);
+				source.unread(frameread);
 			}catch(IOException ex){
 				throw newBitstreamException(STREAM_ERROR);
 			}
@@ -243,8 +279,9 @@ public final class Bitstream implements BitstreamErrors{
 	/** Close MP3 frame. */
 	public void closeFrame(){
 		framesize = -1;
-		wordpointer = -1;
-		bitindex = -1;
+		bytepointer = -1;
+		bitcache = 0;
+		cachebits = 0;
 	}
 
 	/** Determines if the next 4 bytes of the stream represent a frame header. */
@@ -252,7 +289,7 @@ public final class Bitstream implements BitstreamErrors{
 		int read = readBytes(syncbuf, 0, 4);
 		int headerstring = ((syncbuf[0] << 24) & 0xFF000000) | ((syncbuf[1] << 16) & 0x00FF0000) | ((syncbuf[2] << 8) & 0x0000FF00) | ((syncbuf[3] << 0) & 0x000000FF);
 		try{
-			source.unread(syncbuf, 0, read);
+			source.unread(read);
 		}catch(IOException ex){
 		}
 		boolean sync = false;
@@ -281,21 +318,29 @@ public final class Bitstream implements BitstreamErrors{
 
 	/** Get next 32 bits from bitstream. They are stored in the headerstring. syncmod allows Synchro flag ID The returned value is False at the end of stream. */
 	int syncHeader(byte syncmode) throws BitstreamException{
-		boolean sync;
-		// read additional 2 bytes
-		int bytesRead = readBytes(syncbuf, 0, 3);
-		if(bytesRead != 3) throw newBitstreamException(STREAM_EOF, null);
-		int headerstring = ((syncbuf[0] << 16) & 0x00FF0000) | ((syncbuf[1] << 8) & 0x0000FF00) | ((syncbuf[2] << 0) & 0x000000FF);
-		do{
-			headerstring <<= 8;
-			if(readBytes(syncbuf, 3, 1) != 1) throw newBitstreamException(STREAM_EOF, null);
-			headerstring |= (syncbuf[3] & 0x000000FF);
-			sync = isSyncMark(headerstring, syncmode, syncword);
-		}while(!sync);
-		return headerstring;
+		try{
+			// Only the candidates found by the source scanner can be sync marks.
+			while(source.skipToSync()){
+				int headerstring = 0;
+				for(int i = 0; i < 4; i++){
+					int b = source.read();
+					if(b < 0) throw newBitstreamException(STREAM_EOF, null);
+					headerstring = (headerstring << 8) | b;
+				}
+				if(isSyncMark(headerstring, syncmode, syncword)) return headerstring;
+				source.unread(3);
+			}
+		}catch(IOException ex){
+			throw newBitstreamException(STREAM_ERROR, ex);
+		}
+		throw newBitstreamException(STREAM_EOF, null);
 	}
 
 	public boolean isSyncMark(int headerstring, int syncmode, int word){
+		return isSyncMark(headerstring, syncmode, word, single_ch_mode);
+	}
+
+	static boolean isSyncMark(int headerstring, int syncmode, int word, boolean single_ch_mode){
 		boolean sync = false;
 		if(syncmode == INITIAL_SYNC) sync = ((headerstring & 0xFFE00000) == 0xFFE00000); // SZD: MPEG 2.5
 		else sync = ((headerstring & 0xFFF80C00) == word) && (((headerstring & 0x000000C0) == 0x000000C0) == single_ch_mode);
@@ -310,60 +355,52 @@ public final class Bitstream implements BitstreamErrors{
 
 	/** Reads the data for the next frame. The frame is not parsed until parse frame is called. */
 	int read_frame_data(int bytesize) throws BitstreamException{
-		int numread = readFully(frame_bytes, 0, bytesize);
+		framepos = source.position();
+		try{
+			frameread = source.skip(bytesize);
+		}catch(IOException ex){
+			throw newBitstreamException(STREAM_ERROR, ex);
+		}
+		int numread = frameread;
 		framesize = bytesize;
-		wordpointer = -1;
-		bitindex = -1;
+		bytepointer = -1;
+		bitcache = 0;
+		cachebits = 0;
 		return numread;
 	}
 
 	/** Parses the data previously read with read_frame_data(). */
 	void parse_frame() throws BitstreamException{
-		// Convert Bytes read to int
-		int b = 0;
-		byte[] byteread = frame_bytes;
-		int bytesize = framesize;
-		for(int k = 0; k < bytesize; k += 4){
-			byte b0 = 0, b1 = 0, b2 = 0, b3 = 0;
-			b0 = byteread[k];
-			if(k + 1 < bytesize) b1 = byteread[k + 1];
-			if(k + 2 < bytesize) b2 = byteread[k + 2];
-			if(k + 3 < bytesize) b3 = byteread[k + 3];
-			framebuffer[b++] = ((b0 << 24) & 0xFF000000) | ((b1 << 16) & 0x00FF0000) | ((b2 << 8) & 0x0000FF00) | (b3 & 0x000000FF);
-		}
-		wordpointer = 0;
-		bitindex = 0;
+		// The frame is read in place; get_bits() pads it with zeros.
+		frame = source.view(framepos, frameread);
+		framestart = frame.position();
+		frameend = frame.limit();
+		bytepointer = framestart;
+		bitcache = 0;
+		cachebits = 0;
 	}
 
-	/** Read bits from buffer into the lower bits of an unsigned int. The LSB contains the latest read bit of the stream. (1 <= number_of_bits <= 16) */
+	/** Read bits from buffer into the lower bits of an unsigned int. The LSB contains the latest read bit of the stream. (0 <= number_of_bits <= 32) */
 	public int get_bits(int number_of_bits){
-		int returnvalue = 0;
-		int sum = bitindex + number_of_bits;
-		// E.B : There is a problem here, wordpointer could be -1 ?!
-		if(wordpointer < 0) wordpointer = 0;
-		// E.B : End.
-		if(sum <= 32) {
-			// all bits contained in *wordpointer
-			returnvalue = (framebuffer[wordpointer] >>> (32 - sum)) & bitmask[number_of_bits];
-			// returnvalue = (wordpointer[0] >> (32 - sum)) &
-			// bitmask[number_of_bits];
-			if((bitindex += number_of_bits) == 32){
-				bitindex = 0;
-				wordpointer++; // added by me!
+		if(cachebits < number_of_bits){
+			// E.B : bytepointer is -1 if bits are read before parse_frame().
+			if(bytepointer < 0) bytepointer = framestart;
+			// Append the next big-endian word below the bits still cached.
+			int p = bytepointer;
+			long word;
+			if(p + 4 <= frameend) word = frame.getInt(p) & 0xFFFFFFFFL;
+			else{
+				word = 0;
+				for(int i = p; i < p + 4; i++) word = (word << 8) | (i < frameend ? frame.get(i) & 0xFF : 0);
 			}
-			return returnvalue;
+			bitcache |= word << (32 - cachebits);
+			cachebits += 32;
+			bytepointer = p + 4;
 		}
-		// E.B : Check that ?
-		// ((short[])&returnvalue)[0] = ((short[])wordpointer + 1)[0];
-		// wordpointer++; // Added by me!
-		// ((short[])&returnvalue + 1)[0] = ((short[])wordpointer)[0];
-		int right = (framebuffer[wordpointer] & 0x0000FFFF);
-		wordpointer++;
-		int left = (framebuffer[wordpointer] & 0xFFFF0000);
-		returnvalue = ((right << 16) & 0xFFFF0000) | ((left >>> 16) & 0x0000FFFF);
-		returnvalue >>>= 48 - sum; // returnvalue >>= 16 - (number_of_bits - (32 - bitindex))
-		returnvalue &= bitmask[number_of_bits];
-		bitindex = sum - 32;
+		// Shifted in two steps, so number_of_bits = 0 returns 0.
+		int returnvalue = (int)((bitcache >>> 1) >>> (63 - number_of_bits));
+		bitcache <<= number_of_bits;
+		cachebits -= number_of_bits;
 		return returnvalue;
 	}
 
@@ -373,34 +410,7 @@ public final class Bitstream implements BitstreamErrors{
 		single_ch_mode = ((syncword0 & 0x000000C0) == 0x000000C0);
 	}
 
-	/**
-	 * Reads the exact number of bytes from the source input stream into a byte array.
-	 * @param b The byte array to read the specified number of bytes into.
-	 * @param offs The index in the array where the first byte read should be stored.
-	 * @param len The number of bytes to read.
-	 * @exception BitstreamException If the specified number of bytes could not be read from the stream.
-	 */
-	private int readFully(byte[] b, int offs, int len) throws BitstreamException{
-		int nRead = 0;
-		try{
-			while(len > 0) {
-				int bytesread = source.read(b, offs, len);
-				if(bytesread == -1) {
-					while(len-- > 0) b[offs++] = 0;
-					break;
-					// throw newBitstreamException(UNEXPECTED_EOF, new EOFException());
-				}
-				nRead = nRead + bytesread;
-				offs += bytesread;
-				len -= bytesread;
-			}
-		}catch(IOException ex){
-			throw newBitstreamException(STREAM_ERROR, ex);
-		}
-		return nRead;
-	}
-
-	/** Simlar to readFully, but doesn't throw exception when EOF is reached. */
+	/** Reads bytes from the source until <code>len</code> bytes are read or the end of the stream is reached. */
 	private int readBytes(byte[] b, int offs, int len) throws BitstreamException{
 		int totalBytesRead = 0;
 		try{
@@ -0,0 +1,12 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/** The 32 samples passed at a time by the default <code>Obuffer.appendBlock</code>, one array for each thread instead of one for each block. */
+final class BlockSamples{
+	private static final ThreadLocal<float[]> samples = ThreadLocal.withInitial(() -> new float[32]);
+
+	private BlockSamples(){}
+
+	static float[] get(){
+		return samples.get();
+	}
+}
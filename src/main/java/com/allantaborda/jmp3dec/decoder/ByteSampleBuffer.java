@@ -0,0 +1,104 @@
+package com.allantaborda.jmp3dec.decoder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Output buffer that keeps a frame of samples as the bytes of linear PCM: signed integers of 16, 24 or 32 bits, or floats of 32 bits normalised
+ * to [-1, 1], in little-endian or big-endian order. Each block of samples is written in one pass, with the format chosen before the loop. Integer
+ * samples are clipped to their range; float samples aren't clipped.
+ */
+public class ByteSampleBuffer extends PcmBuffer{
+	private byte[] buffer;
+	/** View of the buffer in the byte order of the samples. */
+	private ByteBuffer view;
+	private int bits;
+	private boolean floating, big_endian;
+	/** Bytes of each sample: 2, 3 or 4. */
+	private int size;
+
+	/**
+	 * Creates a buffer of samples of a linear PCM format.
+	 * @param bits The sample size: 16, 24 or 32 for integers, 32 for floats.
+	 * @param floating True for float samples, false for signed integer samples.
+	 * @param big_endian True for big-endian samples, false for little-endian samples.
+	 */
+	public ByteSampleBuffer(int sample_frequency, int number_of_channels, int bits, boolean floating, boolean big_endian){
+		super(sample_frequency, number_of_channels);
+		if(floating ? bits != 32 : bits != 16 && bits != 24 && bits != 32) throw new IllegalArgumentException("Unsupported sample size: " + bits);
+		this.bits = bits;
+		this.floating = floating;
+		this.big_endian = big_endian;
+		size = bits >>> 3;
+		buffer = new byte[OBUFFERSIZE * size];
+		view = ByteBuffer.wrap(buffer).order(big_endian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+	}
+
+	public int getSampleSizeInBits(){
+		return bits;
+	}
+
+	public boolean isFloating(){
+		return floating;
+	}
+
+	public boolean isBigEndian(){
+		return big_endian;
+	}
+
+	public byte[] getBuffer(){
+		return buffer;
+	}
+
+	/** Returns the number of bytes of the buffer holding samples. */
+	public int getByteLength(){
+		return getBufferLength() * size;
+	}
+
+	/** Takes a 16 Bit PCM sample. */
+	public void append(int channel, short value){
+		int p = bufferp[channel] * size;
+		if(floating) view.putFloat(p, value * (1.0f / 32768.0f));
+		else if(size == 2) view.putShort(p, value);
+		else if(size == 4) view.putInt(p, value << 16);
+		else{
+			int first = big_endian ? 16 : 0, next = big_endian ? -8 : 8, v = value << 8;
+			buffer[p] = (byte) (v >> first);
+			buffer[p + 1] = (byte) (v >> (first + next));
+			buffer[p + 2] = (byte) (v >> (first + 2 * next));
+		}
+		bufferp[channel] += channels;
+	}
+
+	public void appendBlock(int channel, float[] src, int off, int count, int stride){
+		ByteBuffer b = view;
+		int pos = bufferp[channel], end = off + count * stride, p = pos * size, inc = channels * size;
+		if(floating){
+			for(; off < end; off += stride, p += inc) b.putFloat(p, src[off] * (1.0f / 32768.0f));
+		}else if(size == 2){
+			for(; off < end; off += stride, p += inc){
+				float fs = src[off];
+				b.putShort(p, fs > 32767.0f ? 32767 : fs < -32768.0f ? -32768 : (short) fs);
+			}
+		}else if(size == 4){
+			// The cast clips to 32 bits.
+			for(; off < end; off += stride, p += inc) b.putInt(p, (int) (src[off] * 65536.0f));
+		}else{
+			byte[] a = buffer;
+			// The bytes of a 24-bit sample are written from the first, whose shift is 16 for big-endian and 0 for little-endian.
+			int first = big_endian ? 16 : 0, next = big_endian ? -8 : 8;
+			for(; off < end; off += stride, p += inc){
+				float fs = src[off] * 256.0f;
+				int v = fs > 8388607.0f ? 8388607 : fs < -8388608.0f ? -8388608 : (int) fs;
+				a[p] = (byte) (v >> first);
+				a[p + 1] = (byte) (v >> (first + next));
+				a[p + 2] = (byte) (v >> (first + 2 * next));
+			}
+		}
+		bufferp[channel] = pos + count * channels;
+	}
+
+	void move(int from, int length){
+		System.arraycopy(buffer, from * size, buffer, 0, length * size);
+	}
+}
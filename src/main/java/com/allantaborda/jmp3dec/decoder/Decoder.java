@@ -21,6 +21,7 @@
 package com.allantaborda.jmp3dec.decoder;
 
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * The <code>Decoder</code> class encapsulates the details of decoding an MPEG audio frame.
@@ -30,6 +31,10 @@ import java.util.Objects;
  */
 public class Decoder implements DecoderErrors{
 	private static final Params DEFAULT_PARAMS = new Params();
+	/** Frames decoded before the target frame of a seek, enough to fill the overlap of Layer III and the 16 vectors of the synthesis filters. */
+	private static final int WARMUP_FRAMES = 2;
+	/** Delay of the Layer III decoder in samples, added to the encoder delay to find the first sample of the source. */
+	private static final int DECODER_DELAY = 529;
 	/** The Obuffer instance that will receive the decoded PCM samples. */
 	private Obuffer output;
 	/** Synthesis filter for the left channel. */
@@ -42,9 +47,24 @@ public class Decoder implements DecoderErrors{
 	private LayerIDecoder l1decoder;
 	private int outputFrequency;
 	private int outputChannels;
+	/** The channels decoded, as an OutputChannels code. */
+	private int whichChannels;
 	private Equalizer equalizer = new Equalizer();
 	private Params params;
 	private boolean initialized;
+	private boolean gapless;
+	/** Factor dividing the sample rate of the output: 1, 2 or 4. */
+	private int downsampling;
+	/** Creates the synthesis engine of each synthesis filter. */
+	private Supplier<SynthesisEngine> engines;
+	/** Whether the Layer III decoder skips the zero subbands. */
+	private boolean skipZeroSubbands = true;
+	/** Samples of the stream from the first sample of the source to the last, or -1 if the stream has no LAME extension. */
+	private long gaplessStart, gaplessEnd = -1;
+	/** Sample position in the stream of the next frame, and the first sample to output after a seek. */
+	private long position, outputStart;
+	/** Samples per channel output by the last frame, and how many were skipped before them. */
+	private int outputSkip, outputLength;
 
 	/** Creates a new <code>Decoder</code> instance with default parameters. */
 	public Decoder(){
@@ -60,6 +80,9 @@ public class Decoder implements DecoderErrors{
 		params = params0;
 		Equalizer eq = params.getInitialEqualizerSettings();
 		if(eq != null) equalizer.setFrom(eq);
+		gapless = params.isGapless();
+		downsampling = params.getDownsampling();
+		engines = params.getSynthesisEngine();
 	}
 
 	public static Params getDefaultParams(){
@@ -74,6 +97,39 @@ public class Decoder implements DecoderErrors{
 		if(filter2 != null) filter2.setEQ(factors);
 	}
 
+	/**
+	 * Enables or disables gapless decoding. The encoder delay and padding given by the LAME extension of the Xing or Info header of the first frame,
+	 * and the delay of the decoder, are then not output. Streams without the extension are output entirely.
+	 */
+	public void setGapless(boolean gapless){
+		this.gapless = gapless;
+	}
+
+	public boolean isGapless(){
+		return gapless;
+	}
+
+	/** Sets whether the Layer III decoder skips the subbands after the last non-zero one, which it does by default. For benchmarks only. */
+	void setSkipZeroSubbands(boolean skip){
+		skipZeroSubbands = skip;
+		if(l3decoder != null) l3decoder.setSkipZeroSubbands(skip);
+	}
+
+	/**
+	 * Sets the output to the sample rate of the stream, or to half or a quarter of it. The output then only holds the frequencies of the lower 16
+	 * or 8 subbands, and the synthesis only computes the samples output. Takes effect when the first frame is decoded.
+	 * @param factor 1, 2 or 4.
+	 * @throws IllegalArgumentException If the factor is not 1, 2 or 4.
+	 */
+	public void setDownsampling(int factor){
+		if(factor != 1 && factor != 2 && factor != 4) throw new IllegalArgumentException("Invalid downsampling: " + factor);
+		downsampling = factor;
+	}
+
+	public int getDownsampling(){
+		return downsampling;
+	}
+
 	/**
 	 * Decodes one frame from an MPEG audio bitstream.
 	 * @param header The header describing the frame to decode.
@@ -84,17 +140,141 @@ public class Decoder implements DecoderErrors{
 		if(!initialized) initialize(header);
 		int layer = header.layer();
 		output.clear_buffer();
+		// A frame that threw part-way may have left samples in the filters that were never flushed.
+		filter1.discard();
+		if(filter2 != null) filter2.discard();
 		retrieveDecoder(header, stream, layer).decodeFrame();
+		// Output only the samples from the seek target, and with gapless decoding only the samples of the source.
+		long start = outputStart, end = Long.MAX_VALUE, next = position + header.samples_per_frame();
+		if(gapless && gaplessEnd >= 0){
+			start = Math.max(start, gaplessStart);
+			end = gaplessEnd;
+		}
+		outputSkip = (int) Math.min(Math.max(start - position, 0), next - position);
+		outputLength = (int) Math.max(Math.min(next, end) - position - outputSkip, 0);
+		position = next;
+		if(downsampling > 1){
+			// Output sample i of the frame is the sample i * downsampling of the frame in the stream.
+			int last = outputSkip + outputLength;
+			outputSkip = (outputSkip + downsampling - 1) / downsampling;
+			outputLength = (last + downsampling - 1) / downsampling - outputSkip;
+		}
+		if(outputSkip != 0 || outputLength != header.samples_per_frame() / downsampling){
+			if(output instanceof PcmBuffer) ((PcmBuffer) output).trim(outputSkip, outputLength);
+		}
 		return output;
 	}
 
+	/**
+	 * Returns the number of samples per channel of the last frame decoded that were not output, because they are before the target of a seek or,
+	 * with gapless decoding, before the source. The sample buffers of the decoder are trimmed by it; other output buffers have them at the start.
+	 * Like the output length, it's counted at the output frequency.
+	 */
+	public int getOutputSkip(){
+		return outputSkip;
+	}
+
+	/**
+	 * Returns the number of samples per channel of the last frame decoded to output, after the skipped ones. With gapless decoding, the samples
+	 * after the end of the source are not output.
+	 */
+	public int getOutputLength(){
+		return outputLength;
+	}
+
+	/** Returns the sample position in the stream of the next frame to decode, counting the samples of the Xing or Info frame and the delays. */
+	public long getSamplePosition(){
+		return position;
+	}
+
+	/**
+	 * Returns the number of samples per channel output when the stream is decoded entirely.
+	 * @return The number of samples of the source with gapless decoding, or -1 if unknown.
+	 */
+	public long getGaplessSamples(){
+		if(!gapless || gaplessEnd < 0) return -1;
+		// The samples output are those of the stream at multiples of the downsampling.
+		return (gaplessEnd + downsampling - 1) / downsampling - (gaplessStart + downsampling - 1) / downsampling;
+	}
+
+	/** Reads the encoder delay and padding given by the header of the first frame. */
+	private void gapless_range(Header header){
+		long samples = header.gapless_samples();
+		if(samples < 0) return;
+		gaplessStart = header.samples_per_frame() + header.encoder_delay() + DECODER_DELAY;
+		gaplessEnd = gaplessStart + samples;
+	}
+
+	/**
+	 * Tells the decoder that the bitstream was moved to another frame. The Layer III bit reservoir and overlap and the state of the synthesis filters are
+	 * cleared, so no samples of the frames before the seek are mixed with the next frames.
+	 */
+	public void seek_notify(){
+		if(l3decoder != null) l3decoder.seek_notify();
+		if(filter1 != null) filter1.reset();
+		if(filter2 != null) filter2.reset();
+	}
+
+	/**
+	 * Tells the decoder that the bitstream was moved to the frame that starts at a sample, so the gapless trimming of the next frames stays in place.
+	 * @param sample The sample position per channel of the frame in the stream, counting the samples of the Xing or Info frame and the delays.
+	 */
+	public void seek_notify(long sample){
+		seek_notify();
+		position = sample;
+		outputStart = 0;
+	}
+
+	/**
+	 * Moves a bitstream to the frame containing a sample and primes the decoder, so the next frame decodes exactly as without the seek. The bit
+	 * reservoir of Layer III is filled with the main data of the frames before (at most 511 bytes are referenced), and the two frames before the
+	 * target are decoded silently to fill the overlap and the synthesis filters. The samples of the next frame before the target are not output.
+	 * @param stream The bitstream, over a seekable source.
+	 * @param index The index of the frames of the stream.
+	 * @param sample The sample position per channel at the sample rate of the stream, from the first sample of the source with gapless decoding.
+	 * @return The number of samples per channel of the next frame not output, at the sample rate of the stream.
+	 * @throws BitstreamException If the bitstream can't be moved or read.
+	 * @throws DecoderException If a frame can't be decoded.
+	 */
+	public int seekToSample(Bitstream stream, FrameIndex index, long sample) throws BitstreamException, DecoderException{
+		if(index.frames() == 0) return 0;
+		if(!initialized) gapless_range(stream.header());
+		if(gapless && gaplessEnd >= 0) sample = Math.min(Math.max(sample, 0) + gaplessStart, gaplessEnd);
+		sample = Math.min(Math.max(sample, 0), index.samples());
+		int frame = Math.min(index.frameAtSample(sample), index.frames() - 1);
+		int start = Math.max(0, frame - WARMUP_FRAMES), first = start;
+		Header h = new Header();
+		h.calculate_framesize(index.header(frame));
+		if(h.layer() == 3){
+			// Go back until the frames before the first decoded one hold the largest main_data_begin.
+			int need = h.version() == Header.MPEG1 ? 511 : 255;
+			for(int fed = 0; first > 0 && fed < need; fed += h.slots()) h.calculate_framesize(index.header(--first));
+		}
+		stream.seek(index.offset(first));
+		seek_notify();
+		for(int i = first; i < frame; i++){
+			Header header = stream.readFrame();
+			if(header == null) break;
+			if(i < start){
+				if(!initialized) initialize(header);
+				((LayerIIIDecoder) retrieveDecoder(header, stream, 3)).feed_reservoir();
+			}else decodeFrame(header, stream);
+			stream.closeFrame();
+		}
+		if(output != null) output.clear_buffer();
+		position = index.sample(frame);
+		outputStart = sample;
+		return (int) (sample - position);
+	}
+
 	/** Changes the output buffer. This will take effect the next time decodeFrame() is called. */
 	public void setOutputBuffer(Obuffer out){
 		output = out;
 	}
 
 	/**
-	 * Retrieves the sample frequency of the PCM samples output by this decoder. This typically corresponds to the sample rate encoded in the MPEG audio stream.
+	 * Retrieves the sample frequency of the PCM samples output by this decoder. This typically corresponds to the sample rate encoded in the MPEG audio stream,
+	 * divided by the downsampling.
 	 * @return The sample rate (in Hz) of the samples written to the output buffer when decoding.
 	 */
 	public int getOutputFrequency(){
@@ -120,15 +300,17 @@ public class Decoder implements DecoderErrors{
 
 	protected FrameDecoder retrieveDecoder(Header header, Bitstream stream, int layer) throws DecoderException{
 		if(layer < 1 || layer > 3) throw newDecoderException(UNSUPPORTED_LAYER, null);
-		// REVIEW: allow channel output selection type (LEFT, RIGHT, BOTH, DOWNMIX)
 		if(layer == 3){
-			if(l3decoder == null) l3decoder = new LayerIIIDecoder(stream, header, filter1, filter2, output, OutputChannels.BOTH_CHANNELS);
+			if(l3decoder == null){
+				l3decoder = new LayerIIIDecoder(stream, header, filter1, filter2, output, whichChannels);
+				l3decoder.setSkipZeroSubbands(skipZeroSubbands);
+			}
 			return l3decoder;
 		}else if(layer == 2){
-			if(l2decoder == null) l2decoder = new LayerIIDecoder(stream, header, filter1, filter2, output, OutputChannels.BOTH_CHANNELS);
+			if(l2decoder == null) l2decoder = new LayerIIDecoder(stream, header, filter1, filter2, output, whichChannels);
 			return l2decoder;
 		}else{
-			if(l1decoder == null) l1decoder = new LayerIDecoder(stream, header, filter1, filter2, output, OutputChannels.BOTH_CHANNELS);
+			if(l1decoder == null) l1decoder = new LayerIDecoder(stream, header, filter1, filter2, output, whichChannels);
 			return l1decoder;
 		}
 	}
@@ -136,14 +318,23 @@ public class Decoder implements DecoderErrors{
 	private void initialize(Header header) throws DecoderException{
 		// REVIEW: allow customizable scale factor
 		float scalefactor = 32700.0f;
-		outputChannels = header.mode() == Header.SINGLE_CHANNEL ? 1 : 2;
+		// The output channels of the params select the channels of a stereo stream; a mono stream is output as is.
+		OutputChannels channels = params.getOutputChannels();
+		if(header.mode() == Header.SINGLE_CHANNEL) channels = OutputChannels.BOTH;
+		whichChannels = channels.getChannelsOutputCode();
+		outputChannels = header.mode() == Header.SINGLE_CHANNEL ? 1 : channels.getChannelCount();
 		// set up output buffer if not set up by client.
-		if(output == null) output = new SampleBuffer(header.frequency(), outputChannels);
+		if(output == null) output = new SampleBuffer(header.frequency() / downsampling, outputChannels);
 		float[] factors = equalizer.getBandFactors();
-		filter1 = new SynthesisFilter(0, scalefactor, factors);
-		// REVIEW: allow mono output for stereo
-		if(outputChannels == 2) filter2 = new SynthesisFilter(1, scalefactor, factors);
-		outputFrequency = header.frequency();
+		// Mono output, of a mono stream or of one channel or the downmix of a stereo stream, runs only the first filter.
+		filter1 = new SynthesisFilter(0, scalefactor, factors, engines.get());
+		filter1.setDownsampling(downsampling);
+		if(outputChannels == 2){
+			filter2 = new SynthesisFilter(1, scalefactor, factors, engines.get());
+			filter2.setDownsampling(downsampling);
+		}
+		outputFrequency = header.frequency() / downsampling;
+		gapless_range(header);
 		initialized = true;
 	}
 
@@ -155,6 +346,9 @@ public class Decoder implements DecoderErrors{
 	public static class Params implements Cloneable{
 		private OutputChannels outputChannels = OutputChannels.BOTH;
 		private Equalizer equalizer = new Equalizer();
+		private boolean gapless;
+		private int downsampling = 1;
+		private Supplier<SynthesisEngine> engine = SynthesisEngine::vector;
 
 		public Params(){
 		}
@@ -171,10 +365,45 @@ public class Decoder implements DecoderErrors{
 			return outputChannels;
 		}
 
+		/** Sets the channels output for stereo streams: both, the left or right channel only, or their downmix. Mono streams are always output as is. */
 		public void setOutputChannels(OutputChannels out){
 			outputChannels = Objects.requireNonNull(out);
 		}
 
+		public boolean isGapless(){
+			return gapless;
+		}
+
+		/** Sets whether the decoder starts with gapless decoding. */
+		public void setGapless(boolean gapless){
+			this.gapless = gapless;
+		}
+
+		public int getDownsampling(){
+			return downsampling;
+		}
+
+		/**
+		 * Sets the factor dividing the sample rate of the output: 1, 2 or 4.
+		 * @throws IllegalArgumentException If the factor is not 1, 2 or 4.
+		 */
+		public void setDownsampling(int factor){
+			if(factor != 1 && factor != 2 && factor != 4) throw new IllegalArgumentException("Invalid downsampling: " + factor);
+			downsampling = factor;
+		}
+
+		public Supplier<SynthesisEngine> getSynthesisEngine(){
+			return engine;
+		}
+
+		/**
+		 * Sets how the synthesis engine of each channel is created, such as <code>SynthesisEngine::rotated</code>. The engines output the same samples;
+		 * the default is <code>SynthesisEngine::vector</code>, which is the reference engine unless the vector kernels are available.
+		 */
+		public void setSynthesisEngine(Supplier<SynthesisEngine> engine){
+			this.engine = Objects.requireNonNull(engine);
+		}
+
 		/**
 		 * Retrieves the equalizer settings that the decoder's equalizer will be initialized from.
 		 * <p>
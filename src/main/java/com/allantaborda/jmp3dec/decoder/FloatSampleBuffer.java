@@ -0,0 +1,40 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/**
+ * Output buffer that keeps a frame of samples as floats, normalised so the full scale of 16-bit samples is [-1, 1]. The samples aren't clipped, so
+ * those above full scale keep their value.
+ */
+public class FloatSampleBuffer extends PcmBuffer{
+	/** Factor that normalises a sample of the synthesis filter. */
+	private static final float SCALE = 1.0f / 32768.0f;
+	private float[] buffer;
+
+	public FloatSampleBuffer(int sample_frequency, int number_of_channels){
+		super(sample_frequency, number_of_channels);
+		buffer = new float[OBUFFERSIZE];
+	}
+
+	public float[] getBuffer(){
+		return buffer;
+	}
+
+	/** Takes a 16 Bit PCM sample. */
+	public void append(int channel, short value){
+		buffer[bufferp[channel]] = value * SCALE;
+		bufferp[channel] += channels;
+	}
+
+	public void appendBlock(int channel, float[] src, int off, int count, int stride){
+		float[] b = buffer;
+		int pos = bufferp[channel], ch = channels;
+		for(int end = off + count * stride; off < end; off += stride){
+			b[pos] = src[off] * SCALE;
+			pos += ch;
+		}
+		bufferp[channel] = pos;
+	}
+
+	void move(int from, int length){
+		System.arraycopy(buffer, from, buffer, 0, length);
+	}
+}
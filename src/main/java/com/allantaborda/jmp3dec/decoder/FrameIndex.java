@@ -0,0 +1,322 @@
+package com.allantaborda.jmp3dec.decoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Index of the frames of an MPEG audio stream, built by reading the frame headers only.
+ * <p>
+ * For each frame the index records the offset of its header from the start of the source and its header word. All the frames of a stream have
+ * the same layer, version and sample frequency, so the sample position of a frame is its number times the samples per frame, and seeking by time
+ * or frame number doesn't need any search.
+ */
+public final class FrameIndex{
+	/** Minimum size of the byte ranges scanned in parallel. */
+	private static final long MIN_RANGE = 1 << 22;
+	/** Number of frames following a sync point found in the middle of a file that must chain to it. */
+	private static final int CONFIRM_FRAMES = 3;
+	private long[] offsets = new long[1024];
+	private int[] headers = new int[1024];
+	private int count;
+	private int samplesPerFrame, frequency;
+
+	private FrameIndex(){}
+
+	/**
+	 * Scans the frames of a source, from its current position to its end. The frame payloads are skipped without being decoded.
+	 * @param source The source to scan.
+	 * @return The frame index.
+	 * @throws BitstreamException If a stream error occurs.
+	 */
+	public static FrameIndex scan(FrameSource source) throws BitstreamException{
+		FrameIndex index = new FrameIndex();
+		Bitstream stream = new Bitstream(source);
+		Header h;
+		while((h = stream.readFrame()) != null){
+			if(index.count == 0){
+				index.samplesPerFrame = h.samples_per_frame();
+				index.frequency = h.frequency();
+			}
+			index.add(stream.frame_pos(), h.getSyncHeader());
+			stream.closeFrame();
+		}
+		return index;
+	}
+
+	/**
+	 * Scans the frames of a file, mapping it in memory.
+	 * @param path The file to scan.
+	 * @return The frame index.
+	 * @throws IOException If the file can't be read.
+	 * @throws BitstreamException If a stream error occurs.
+	 */
+	public static FrameIndex scan(Path path) throws IOException, BitstreamException{
+		try(FrameSource source = FrameSource.map(path)){
+			return scan(source);
+		}
+	}
+
+	/**
+	 * Scans the frames of a file on the common ForkJoinPool.
+	 * @see #scanParallel(Path, ForkJoinPool)
+	 */
+	public static FrameIndex scanParallel(Path path) throws IOException, BitstreamException{
+		return scanParallel(path, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Scans the frames of a file in parallel. The file is split into byte ranges, and each range is scanned from a sync point confirmed by the
+	 * following frames. The ranges are then stitched: frames found past the end of the previous range's frames, such as false syncs, are dropped,
+	 * so the index is the same as the one built by <code>scan(path)</code>.
+	 * @param path The file to scan.
+	 * @param pool The pool that scans the ranges.
+	 * @return The frame index.
+	 * @throws IOException If the file can't be read.
+	 * @throws BitstreamException If a stream error occurs.
+	 */
+	public static FrameIndex scanParallel(Path path, ForkJoinPool pool) throws IOException, BitstreamException{
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			long size = channel.size();
+			FrameIndex index = new FrameIndex();
+			long first;
+			int word;
+			// The first frame is synced like the decoder does, which also skips the ID3v2 tag.
+			try(FrameSource source = FrameSource.map(path)){
+				Bitstream stream = new Bitstream(source);
+				Header h = stream.readFrame();
+				if(h == null) return index;
+				index.samplesPerFrame = h.samples_per_frame();
+				index.frequency = h.frequency();
+				first = stream.frame_pos();
+				word = h.getSyncHeader() & 0xFFF80CC0;
+			}
+			long length = Math.max(MIN_RANGE, (size - first) / (4L * pool.getParallelism()) + 1);
+			List<ForkJoinTask<Range>> tasks = new ArrayList<>();
+			for(long a = first; a < size; a += length){
+				long from = a, to = Math.min(size, a + length);
+				tasks.add(pool.submit(() -> new Walker(channel, size, word).scan(from, to, from == first)));
+			}
+			List<Range> ranges = new ArrayList<>(tasks.size());
+			try{
+				for(ForkJoinTask<Range> t : tasks) ranges.add(t.join());
+			}catch(UncheckedIOException e){
+				throw e.getCause();
+			}
+			// Stitch the ranges, following the frames chained from the first one.
+			Walker walker = new Walker(channel, size, word);
+			long next = first;
+			for(Range r : ranges){
+				if(next < 0) break;
+				if(next >= r.to) continue;
+				int j;
+				while((j = Arrays.binarySearch(r.offsets, 0, r.count, next)) < 0 && next >= 0 && next < r.to){
+					// The range was synced on a false frame: rescan it until it joins the frames of the range.
+					index.add(next, walker.header(next));
+					next = walker.next(walker.after(next));
+				}
+				if(j >= 0){
+					for(; j < r.count; j++) index.add(r.offsets[j], r.headers[j]);
+					next = r.next;
+				}
+			}
+			return index;
+		}
+	}
+
+	private void add(long offset, int header){
+		if(count == offsets.length){
+			offsets = Arrays.copyOf(offsets, count * 2);
+			headers = Arrays.copyOf(headers, count * 2);
+		}
+		offsets[count] = offset;
+		headers[count++] = header;
+	}
+
+	/** Returns the number of frames. */
+	public int frames(){
+		return count;
+	}
+
+	/** Returns the offset of the header of a frame from the start of the source. */
+	public long offset(int frame){
+		return offsets[frame];
+	}
+
+	/** Returns the header word of a frame. */
+	public int header(int frame){
+		return headers[frame];
+	}
+
+	/** Returns the position, in samples per channel, of the first sample of a frame. */
+	public long sample(int frame){
+		return (long) frame * samplesPerFrame;
+	}
+
+	/** Returns the number of samples per channel decoded from each frame. */
+	public int samplesPerFrame(){
+		return samplesPerFrame;
+	}
+
+	/** Returns the sample frequency in Hz, or 0 if there are no frames. */
+	public int frequency(){
+		return frequency;
+	}
+
+	/** Returns the total number of samples per channel. */
+	public long samples(){
+		return sample(count);
+	}
+
+	/** Returns the exact duration of the stream in microseconds. */
+	public long duration(){
+		return frequency == 0 ? 0 : samples() * 1000000L / frequency;
+	}
+
+	/**
+	 * Returns the frame containing a sample.
+	 * @param sample The sample position per channel.
+	 * @return The frame number, or the number of frames if the sample is past the end.
+	 */
+	public int frameAtSample(long sample){
+		if(sample <= 0 || count == 0) return 0;
+		return (int) Math.min(sample / samplesPerFrame, count);
+	}
+
+	/**
+	 * Returns the frame playing at a time.
+	 * @param microseconds The time from the start of the stream.
+	 * @return The frame number, or the number of frames if the time is past the end.
+	 */
+	public int frameAtMicrosecond(long microseconds){
+		return frameAtSample(microseconds * frequency / 1000000L);
+	}
+
+	/**
+	 * Returns the first frame whose header is at or after an offset.
+	 * @param offset Offset from the start of the source.
+	 * @return The frame number, or the number of frames if no frame starts at or after the offset.
+	 */
+	public int frameAtOffset(long offset){
+		int i = Arrays.binarySearch(offsets, 0, count, offset);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	/** Frames found in a byte range of a file, and the first frame after them. */
+	private static final class Range{
+		private final long to;
+		private long[] offsets = new long[256];
+		private int[] headers = new int[256];
+		private int count;
+		/** Offset of the first frame at or after the end of the range, or -1 at the end of the file. */
+		private long next;
+
+		Range(long to){
+			this.to = to;
+		}
+
+		void add(long offset, int header){
+			if(count == offsets.length){
+				offsets = Arrays.copyOf(offsets, count * 2);
+				headers = Arrays.copyOf(headers, count * 2);
+			}
+			offsets[count] = offset;
+			headers[count++] = header;
+		}
+	}
+
+	/** Finds frames in a file with the sync rules of <code>Bitstream</code> and <code>Header.read_header()</code>, mapping a window at a time. */
+	private static final class Walker{
+		private static final int WINDOW = 1 << 24;
+		private final FileChannel channel;
+		private final long size;
+		private final int word;
+		private final boolean single_ch_mode;
+		private final Header scratch = new Header();
+		private ByteBuffer window;
+		private long winStart, winEnd;
+
+		Walker(FileChannel channel, long size, int syncword){
+			this.channel = channel;
+			this.size = size;
+			word = syncword & 0xFFFFFF3F;
+			single_ch_mode = (syncword & 0x000000C0) == 0x000000C0;
+		}
+
+		/** Returns the 4 bytes at an offset, which must be at least 4 bytes before the end of the file. */
+		int header(long pos){
+			if(pos < winStart || pos + 4 > winEnd){
+				try{
+					winStart = pos;
+					winEnd = Math.min(size, pos + WINDOW);
+					window = channel.map(FileChannel.MapMode.READ_ONLY, winStart, winEnd - winStart);
+				}catch(IOException e){
+					throw new UncheckedIOException(e);
+				}
+			}
+			return window.getInt((int)(pos - winStart));
+		}
+
+		/** Returns the offset of the byte after a frame. */
+		long after(long pos){
+			return pos + 4 + Math.max(0, scratch.calculate_framesize(header(pos)));
+		}
+
+		/** Returns true if the header at an offset is a sync mark of the stream. */
+		private boolean sync(long pos){
+			return Bitstream.isSyncMark(header(pos), Bitstream.STRICT_SYNC, word, single_ch_mode);
+		}
+
+		/**
+		 * Returns the offset of the next frame accepted by the decoder, searching from an offset. A header is accepted if it is followed by another one,
+		 * or by the end of the file. Otherwise the search continues after the rejected header.
+		 * @return The offset of the frame, or -1 at the end of the file.
+		 */
+		long next(long pos){
+			for(; pos + 4 <= size; pos++){
+				if(!sync(pos)) continue;
+				int fs = scratch.calculate_framesize(header(pos));
+				long end = pos + 4 + Math.max(0, fs);
+				// An incomplete frame ends the stream.
+				if(end > size) return -1;
+				if(end == size || (end + 4 <= size && sync(end))) return pos;
+				pos += 3;
+			}
+			return -1;
+		}
+
+		/** Scans the frames that start in a byte range, from its first frame or from a sync point confirmed by the following frames. */
+		Range scan(long from, long to, boolean synced){
+			Range r = new Range(to);
+			long pos = from;
+			if(!synced){
+				pos = next(from);
+				while(pos >= 0 && pos < to && !confirmed(pos)) pos = next(pos + 1);
+			}
+			while(pos >= 0 && pos < to){
+				r.add(pos, header(pos));
+				pos = next(after(pos));
+			}
+			r.next = pos;
+			return r;
+		}
+
+		private boolean confirmed(long pos){
+			for(int i = 0; i < CONFIRM_FRAMES; i++){
+				long end = after(pos);
+				if(end == size) return true;
+				if(next(end) != end) return false;
+				pos = end;
+			}
+			return true;
+		}
+	}
+}
@@ -0,0 +1,361 @@
+package com.allantaborda.jmp3dec.decoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Source of the bytes of an MPEG audio stream, read by a <code>Bitstream</code>.
+ * <p>
+ * The bytes are read from a window buffer, so the frames can be viewed in place and the last bytes read can be unread without being copied.
+ */
+public abstract class FrameSource implements Closeable{
+	/** Number of bytes before the read position that can always be unread. Must be greater than the size of a frame plus its header. */
+	static final int UNREAD_LIMIT = 4096;
+	/** Size of the buffer of the stream and channel sources. */
+	private static final int BUFFER_SIZE = 4 * UNREAD_LIMIT;
+	/** Size of the windows mapped by the memory-mapped file source. */
+	private static final int MAP_WINDOW = 1 << 27;
+	/** The bytes of the stream from <code>start</code>. The buffer position is the read position. */
+	ByteBuffer buf;
+	/** Stream offset of the first byte of <code>buf</code>. */
+	long start;
+	private ByteBuffer view, viewed;
+
+	FrameSource(){}
+
+	/**
+	 * Creates a source that reads an InputStream.
+	 * @param in The InputStream to read from.
+	 * @return The frame source.
+	 */
+	public static FrameSource of(InputStream in){
+		Objects.requireNonNull(in);
+		return new BufferedSource(ByteBuffer.allocate(BUFFER_SIZE)){
+			@Override
+			int fill(ByteBuffer dst) throws IOException{
+				int n = in.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+				if(n > 0) dst.position(dst.position() + n);
+				return n;
+			}
+
+			@Override
+			public boolean isSeekable(){
+				return false;
+			}
+
+			@Override
+			void moveTo(long position) throws IOException{
+				long n = position - (start + buf.limit());
+				if(n < 0) throw new IOException("Can't seek back in a stream");
+				while(n > 0){
+					long skipped = in.skip(n);
+					if(skipped <= 0){
+						if(in.read() < 0) break;
+						skipped = 1;
+					}
+					n -= skipped;
+				}
+			}
+
+			@Override
+			public void close() throws IOException{
+				in.close();
+			}
+		};
+	}
+
+	/**
+	 * Creates a source over the remaining bytes of a heap or direct ByteBuffer. The buffer itself is not modified.
+	 * @param data The bytes of the stream.
+	 * @return The frame source.
+	 */
+	public static FrameSource of(ByteBuffer data){
+		FrameSource s = new FrameSource(){
+			@Override
+			public long length(){
+				return start + buf.limit();
+			}
+
+			@Override
+			boolean more(){
+				return false;
+			}
+		};
+		s.buf = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+		s.start = -data.position();
+		return s;
+	}
+
+	/**
+	 * Creates a source that reads a channel, such as a <code>FileChannel</code>, from its current position.
+	 * @param channel The channel to read from.
+	 * @return The frame source.
+	 * @throws IOException If the position of the channel can't be read.
+	 */
+	public static FrameSource of(SeekableByteChannel channel) throws IOException{
+		long base = channel.position();
+		return new BufferedSource(ByteBuffer.allocateDirect(BUFFER_SIZE)){
+			@Override
+			int fill(ByteBuffer dst) throws IOException{
+				return channel.read(dst);
+			}
+
+			@Override
+			public long length() throws IOException{
+				return channel.size() - base;
+			}
+
+			@Override
+			void moveTo(long position) throws IOException{
+				channel.position(base + position);
+			}
+
+			@Override
+			public void close() throws IOException{
+				channel.close();
+			}
+		};
+	}
+
+	/**
+	 * Creates a source that maps a file in memory. Files larger than the mapped window are mapped a window at a time.
+	 * @param path The file to read.
+	 * @return The frame source, which closes the file when closed.
+	 * @throws IOException If the file can't be opened or mapped.
+	 */
+	public static FrameSource map(Path path) throws IOException{
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try{
+			return new MappedSource(channel, channel.size());
+		}catch(IOException | RuntimeException e){
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** Returns the offset in the stream of the next byte to be read. */
+	public long position(){
+		return start + buf.position();
+	}
+
+	/**
+	 * Returns the length of the stream.
+	 * @return The number of bytes of the stream, or -1 if unknown.
+	 * @throws IOException If the length can't be read.
+	 */
+	public long length() throws IOException{
+		return -1;
+	}
+
+	/** Returns true if the source can move back, that is, if it's not a stream source. */
+	public boolean isSeekable(){
+		return true;
+	}
+
+	/**
+	 * Moves the read position. Stream sources can only move forward.
+	 * @param position The offset in the stream of the next byte to be read.
+	 * @throws IOException If the source can't move to the position.
+	 */
+	public final void seek(long position) throws IOException{
+		long off = position - start;
+		if(off >= 0 && off <= buf.limit()) buf.position((int) off);
+		else reposition(position);
+	}
+
+	/**
+	 * Reads the next byte.
+	 * @return The byte read, or -1 at the end of the stream.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public final int read() throws IOException{
+		if(!buf.hasRemaining() && !more()) return -1;
+		return buf.get() & 0xFF;
+	}
+
+	/**
+	 * Reads up to <code>len</code> bytes.
+	 * @return The number of bytes read, or -1 at the end of the stream.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public final int read(byte[] b, int off, int len) throws IOException{
+		if(len == 0) return 0;
+		if(!buf.hasRemaining() && !more()) return -1;
+		int n = Math.min(len, buf.remaining());
+		buf.get(b, off, n);
+		return n;
+	}
+
+	/**
+	 * Skips up to <code>len</code> bytes, less only at the end of the stream.
+	 * @return The number of bytes skipped.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public final int skip(int len) throws IOException{
+		int skipped = 0;
+		while(skipped < len){
+			if(!buf.hasRemaining() && !more()) break;
+			int n = Math.min(len - skipped, buf.remaining());
+			buf.position(buf.position() + n);
+			skipped += n;
+		}
+		return skipped;
+	}
+
+	/**
+	 * Moves the read position back, so the last bytes read are read again.
+	 * @param n The number of bytes to unread, at most 4096.
+	 * @throws IOException If the bytes are no longer available.
+	 */
+	public final void unread(int n) throws IOException{
+		if(n > buf.position()) throw new IOException("Can't unread " + n + " bytes");
+		buf.position(buf.position() - n);
+	}
+
+	/**
+	 * Skips the bytes before the next possible frame header, that is, a 0xFF byte followed by a byte with its three high bits set. The buffer is
+	 * searched 8 bytes at a time for 0xFF bytes.
+	 * @return false if the end of the stream was reached before a possible header.
+	 */
+	final boolean skipToSync() throws IOException{
+		do{
+			ByteBuffer b = buf;
+			int p = b.position();
+			int lim = b.limit();
+			for(; p + 9 <= lim; p += 8){
+				// Flag the high bit of each byte of the word equal to 0xFF.
+				long x = ~b.getLong(p);
+				long t = ~(((x & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL) | x | 0x7F7F7F7F7F7F7F7FL);
+				for(; t != 0; t ^= Long.highestOneBit(t)){
+					int i = p + (Long.numberOfLeadingZeros(t) >>> 3);
+					if((b.get(i + 1) & 0xE0) == 0xE0){
+						b.position(i);
+						return true;
+					}
+				}
+			}
+			for(; p + 1 < lim; p++){
+				if(b.get(p) == (byte) 0xFF && (b.get(p + 1) & 0xE0) == 0xE0){
+					b.position(p);
+					return true;
+				}
+			}
+			// Keep the last byte, which may be the first of a header.
+			b.position(p);
+		}while(more());
+		return false;
+	}
+
+	/** Returns a big-endian view, valid until the next read, of bytes read at most 4096 bytes ago. The view starts at its position and ends at its limit. */
+	final ByteBuffer view(long position, int len){
+		if(viewed != buf){
+			view = buf.duplicate().order(ByteOrder.BIG_ENDIAN);
+			viewed = buf;
+		}
+		int off = (int)(position - start);
+		view.limit(off + len).position(off);
+		return view;
+	}
+
+	/**
+	 * Makes more bytes available after the buffer limit, keeping at least 4096 bytes (or all, if fewer) before the read position.
+	 * @return false if the end of the stream was reached.
+	 */
+	abstract boolean more() throws IOException;
+
+	/** Moves the read position outside the buffer. */
+	void reposition(long position) throws IOException{
+		throw new IOException("Position " + position + " is out of the source");
+	}
+
+	@Override
+	public void close() throws IOException{
+	}
+
+	/** Source that reads a stream or channel into a buffer, keeping the bytes that can be unread when the buffer is refilled. */
+	private static abstract class BufferedSource extends FrameSource{
+		BufferedSource(ByteBuffer b){
+			buf = b;
+			buf.limit(0);
+		}
+
+		@Override
+		final boolean more() throws IOException{
+			int pos = buf.position();
+			int drop = Math.max(0, pos - UNREAD_LIMIT);
+			buf.position(drop);
+			buf.compact();
+			start += drop;
+			int n;
+			do n = fill(buf);
+			while(n == 0 && buf.hasRemaining());
+			buf.flip();
+			buf.position(pos - drop);
+			return n > 0;
+		}
+
+		@Override
+		final void reposition(long position) throws IOException{
+			moveTo(position);
+			start = position;
+			buf.limit(0);
+		}
+
+		/** Reads bytes into the buffer from its position, returning the number read or -1 at the end of the stream. */
+		abstract int fill(ByteBuffer dst) throws IOException;
+
+		/** Moves the underlying stream or channel to a position in the source. */
+		abstract void moveTo(long position) throws IOException;
+	}
+
+	/** Source that maps a file one window at a time. */
+	private static final class MappedSource extends FrameSource{
+		private final FileChannel channel;
+		private final long size;
+
+		MappedSource(FileChannel channel, long size) throws IOException{
+			this.channel = channel;
+			this.size = size;
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAP_WINDOW));
+		}
+
+		@Override
+		public long length(){
+			return size;
+		}
+
+		@Override
+		boolean more() throws IOException{
+			if(start + buf.limit() >= size) return false;
+			mapAt(position());
+			return true;
+		}
+
+		@Override
+		void reposition(long position) throws IOException{
+			if(position < 0 || position > size) super.reposition(position);
+			mapAt(position);
+		}
+
+		/** Maps the window around a read position. */
+		private void mapAt(long pos) throws IOException{
+			long from = Math.max(0, pos - UNREAD_LIMIT);
+			buf = channel.map(FileChannel.MapMode.READ_ONLY, from, Math.min(size - from, MAP_WINDOW));
+			start = from;
+			buf.position((int)(pos - from));
+		}
+
+		@Override
+		public void close() throws IOException{
+			channel.close();
+		}
+	}
+}
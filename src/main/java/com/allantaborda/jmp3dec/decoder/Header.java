@@ -108,10 +108,16 @@ public final class Header{
 	// VBR support added by E.B
 	private double[] h_vbr_time_per_frame ={ -1, 384, 1152, 1152 };
 	private boolean h_vbr;
-	private int h_vbr_frames;
+	private int h_vbr_frames = -1;
 	private int h_vbr_scale;
 	private int h_vbr_bytes;
 	private byte[] h_vbr_toc;
+	/** True if the Xing header has a table of contents. */
+	private boolean h_vbr_xing_toc;
+	/** Offsets of the VBRI table of contents from the start of the first frame, at evenly spaced times. */
+	private long[] h_vbri_toc;
+	/** Encoder delay and padding in samples, from the LAME extension of the Xing or Info header, or -1. */
+	private int h_encoder_delay = -1, h_encoder_padding = -1;
 	private byte syncmode = Bitstream.INITIAL_SYNC;
 	private Crc16 crc;
 	public short checksum;
@@ -211,14 +217,17 @@ public final class Header{
 		else offset = (h_mode == SINGLE_CHANNEL ? 13 : 21) - 4;
 		try{
 			System.arraycopy(firstframe, offset, tmp, 0, 4);
-			// Is "Xing" ?
-			if("Xing".equals(new String(tmp))){
+			// Is "Xing" ? LAME writes the same header as "Info" in CBR streams.
+			String xing = new String(tmp);
+			if("Xing".equals(xing) || "Info".equals(xing)){
 				// Yes.
-				h_vbr = true;
+				h_vbr = "Xing".equals(xing);
 				h_vbr_frames = -1;
 				h_vbr_bytes = -1;
 				h_vbr_scale = -1;
 				h_vbr_toc = new byte[100];
+				h_vbr_xing_toc = false;
+				h_vbri_toc = null;
 				int length = 4;
 				// Read flags.
 				byte flags[] = new byte[4];
@@ -240,6 +249,7 @@ public final class Header{
 				if((flags[3] & (byte) (1 << 2)) != 0){
 					System.arraycopy(firstframe, offset + length, h_vbr_toc, 0, h_vbr_toc.length);
 					length += h_vbr_toc.length;
+					h_vbr_xing_toc = true;
 				}
 				// Read scale (if available).
 				if((flags[3] & (byte) (1 << 3)) != 0){
@@ -247,6 +257,16 @@ public final class Header{
 					h_vbr_scale = (tmp[0] << 24) & 0xFF000000 | (tmp[1] << 16) & 0x00FF0000 | (tmp[2] << 8) & 0x0000FF00 | tmp[3] & 0x000000FF;
 					length += 4;
 				}
+				// LAME extension: encoder version, then 21 bytes in, the encoder delay and padding (12 bits each).
+				int lame = offset + length;
+				h_encoder_delay = h_encoder_padding = -1;
+				if(lame + 24 <= framesize){
+					String encoder = new String(firstframe, lame, 4);
+					if("LAME".equals(encoder) || "Lavf".equals(encoder) || "Lavc".equals(encoder)){
+						h_encoder_delay = (firstframe[lame + 21] & 0xFF) << 4 | (firstframe[lame + 22] & 0xFF) >>> 4;
+						h_encoder_padding = (firstframe[lame + 22] & 0x0F) << 8 | firstframe[lame + 23] & 0xFF;
+					}
+				}
 				// System.out.println("VBR:"+xing+" Frames:"+ h_vbr_frames +"
 				// Size:"+h_vbr_bytes);
 			}
@@ -265,6 +285,8 @@ public final class Header{
 				h_vbr_bytes = -1;
 				h_vbr_scale = -1;
 				h_vbr_toc = new byte[100];
+				h_vbr_xing_toc = false;
+				h_vbri_toc = null;
 				// Bytes.
 				int length = 4 + 6;
 				System.arraycopy(firstframe, offset + length, tmp, 0, tmp.length);
@@ -274,6 +296,20 @@ public final class Header{
 				System.arraycopy(firstframe, offset + length, tmp, 0, tmp.length);
 				h_vbr_frames = (tmp[0] << 24) & 0xFF000000 | (tmp[1] << 16) & 0x00FF0000 | (tmp[2] << 8) & 0x0000FF00 | tmp[3] & 0x000000FF;
 				length += 4;
+				// TOC: number of entries, scale, size of an entry and frames per entry, then the size of each segment. The first segment follows this frame.
+				int entries = (firstframe[offset + length] & 0xFF) << 8 | firstframe[offset + length + 1] & 0xFF;
+				int scale = (firstframe[offset + length + 2] & 0xFF) << 8 | firstframe[offset + length + 3] & 0xFF;
+				int entrysize = (firstframe[offset + length + 4] & 0xFF) << 8 | firstframe[offset + length + 5] & 0xFF;
+				length += 8;
+				if(entries > 0 && entrysize >= 1 && entrysize <= 4 && offset + length + entries * entrysize <= framesize){
+					h_vbri_toc = new long[entries + 1];
+					h_vbri_toc[0] = framesize + 4;
+					for(int i = 0; i < entries; i++){
+						long segment = 0;
+						for(int j = 0; j < entrysize; j++) segment = segment << 8 | firstframe[offset + length++] & 0xFF;
+						h_vbri_toc[i + 1] = h_vbri_toc[i] + segment * scale;
+					}
+				}
 				// System.out.println("VBR:"+vbri+" Frames:"+ h_vbr_frames +" Size:"+h_vbr_bytes);
 			}
 		}catch(ArrayIndexOutOfBoundsException e){
@@ -351,6 +387,62 @@ public final class Header{
 		return h_vbr_toc;
 	}
 
+	/**
+	 * Returns the number of frames of the stream given by the Xing, Info or VBRI header, not counting the frame of the header.
+	 * @return The number of frames, or -1 if not available.
+	 */
+	public int vbr_frames(){
+		return h_vbr_frames;
+	}
+
+	/**
+	 * Returns the encoder delay of the LAME extension of the Xing or Info header.
+	 * @return The number of samples added by the encoder before the first sample of the source, or -1 if not available.
+	 */
+	public int encoder_delay(){
+		return h_encoder_delay;
+	}
+
+	/**
+	 * Returns the encoder padding of the LAME extension of the Xing or Info header.
+	 * @return The number of samples added by the encoder after the last sample of the source, or -1 if not available.
+	 */
+	public int encoder_padding(){
+		return h_encoder_padding;
+	}
+
+	/**
+	 * Returns the number of samples of the source that was encoded, that is, without the encoder delay and padding.
+	 * @return The number of samples per channel, or -1 if the stream has no LAME extension.
+	 */
+	public long gapless_samples(){
+		if(h_encoder_delay < 0 || h_vbr_frames <= 0) return -1;
+		return Math.max(0, (long) h_vbr_frames * samples_per_frame() - h_encoder_delay - h_encoder_padding);
+	}
+
+	/**
+	 * Returns the offset of a time in the stream, interpolated from the table of contents of the Xing or VBRI header.
+	 * @param fraction The time, as a fraction of the duration of the stream from 0 to 1.
+	 * @return The offset in bytes from the start of the first frame, or -1 if there is no table of contents.
+	 */
+	public long vbr_toc_offset(double fraction){
+		fraction = Math.min(Math.max(fraction, 0), 1);
+		if(h_vbr_xing_toc && h_vbr_bytes > 0){
+			// Entry i is the offset at i percent of the duration, in 256ths of the stream size.
+			double percent = fraction * 100;
+			int i = Math.min((int) percent, 99);
+			double a = h_vbr_toc[i] & 0xFF, b = i < 99 ? h_vbr_toc[i + 1] & 0xFF : 256;
+			return (long) ((a + (b - a) * (percent - i)) * h_vbr_bytes / 256);
+		}
+		if(h_vbri_toc != null){
+			int n = h_vbri_toc.length - 1;
+			double pos = fraction * n;
+			int i = Math.min((int) pos, n - 1);
+			return (long) (h_vbri_toc[i] + (h_vbri_toc[i + 1] - h_vbri_toc[i]) * (pos - i));
+		}
+		return -1;
+	}
+
 	/** Returns Checksum flag. Compares computed checksum with stream checksum. */
 	public boolean checksum_ok(){
 		return checksum == crc.checksum();
@@ -401,6 +493,19 @@ public final class Header{
 		return framesize;
 	}
 
+	/** Calculate Frame size of a header word, like read_header() does for a frame of the same stream. */
+	int calculate_framesize(int headerstring){
+		h_version = (headerstring >>> 19) & 1;
+		if(((headerstring >>> 20) & 1) == 0) h_version = MPEG25_LSF;
+		h_sample_frequency = (headerstring >>> 10) & 3;
+		h_layer = 4 - (headerstring >>> 17) & 3;
+		h_protection_bit = (headerstring >>> 16) & 1;
+		h_bitrate_index = (headerstring >>> 12) & 0xF;
+		h_padding_bit = (headerstring >>> 9) & 1;
+		h_mode = (headerstring >>> 6) & 3;
+		return calculate_framesize();
+	}
+
 	/**
 	 * Returns the maximum number of frames in the stream.
 	 * @param streamsize
@@ -427,6 +532,16 @@ public final class Header{
 		}
 	}
 
+	/**
+	 * Returns the number of samples per channel decoded from each frame.
+	 * @return 384 for Layer I, 576 for MPEG-2 LSF Layer III and 1152 otherwise.
+	 */
+	public int samples_per_frame(){
+		if(h_layer == 1) return 384;
+		if(h_layer == 3 && h_version != MPEG1) return 576;
+		return 1152;
+	}
+
 	/**
 	 * Returns ms/frame.
 	 * @return milliseconds per frame.
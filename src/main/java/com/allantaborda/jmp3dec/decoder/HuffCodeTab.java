@@ -43,6 +43,12 @@ package com.allantaborda.jmp3dec.decoder;
 final class HuffCodeTab{
 	private static final int MXOFF = 250;
 	private static final int HTN = 34;
+	/** Maximum number of bits looked ahead by the decoding tables. */
+	private static final int MAX_LOOKBITS = 10;
+	/** Lookup entry flag: the sign bits were already folded into the decoded values. */
+	private static final int LOOKUP_FINAL = 1 << 25;
+	/** Lookup entry shift of the number of bits consumed. */
+	private static final int LOOKUP_LEN_SHIFT = 26;
 	private char tablename0 = ' '; /* string, containing table_description */
 	private char tablename1 = ' '; /* string, containing table_description */
 	// private char tablename2 = ' '; /* string, containing table_description */
@@ -55,6 +61,12 @@ final class HuffCodeTab{
 	// private int[] hlen; /* pointer to array[xlen][ylen] */
 	private int[][] val; /* decoder tree */
 	private int treelen; /* length of decoder tree */
+	private int lookbits; /* number of bits indexing the lookup table */
+	/*
+	 * Decoding table indexed by the next lookbits bits. A negative entry is the complement of the tree node reached after lookbits bits; otherwise the
+	 * entry holds the number of bits consumed, the LOOKUP_FINAL flag and four signed 6 bit values (v, w, x, y, from high to low).
+	 */
+	private int[] lookup;
 	private static int ValTab0[][] = { { 0, 0 } };// dummy
 	private static int ValTab1[][] = { { 2, 1 }, { 0, 0 }, { 2, 1 }, { 0, 16 }, { 2, 1 }, { 0, 1 }, { 0, 17 }, };
 	private static int ValTab2[][] = { { 2, 1 }, { 0, 0 }, { 4, 1 }, { 2, 1 }, { 0, 16 }, { 0, 1 }, { 2, 1 }, { 0, 17 },
@@ -394,11 +406,32 @@ final class HuffCodeTab{
 			return 0;
 		}
 		/* Lookup in Huffman table. */
+		int e = h.lookup[br.hpeekbits(h.lookbits)];
+		if(e >= 0){
+			br.hskipbits(e >>> LOOKUP_LEN_SHIFT);
+			if((e & LOOKUP_FINAL) != 0){
+				if(h.tablename0 == '3' && (h.tablename1 == '2' || h.tablename1 == '3')){
+					v[0] = (e << 8) >> 26;
+					w[0] = (e << 14) >> 26;
+				}
+				x[0] = (e << 20) >> 26;
+				y[0] = (e << 26) >> 26;
+				return 0;
+			}
+			x[0] = (e >> 6) & 0x3f;
+			y[0] = e & 0x3f;
+			error = 0;
+		}else{
+			/* Code longer than the table: continue walking the tree. */
+			br.hskipbits(h.lookbits);
+			point = ~e;
+			level = dmask >>> h.lookbits;
+		}
 		/*
 		 * int bitsAvailable = 0; int bitIndex = 0;
 		 * int bits[] = bitbuf;
 		 */
-		do{
+		if(e < 0) do{
 			if(h.val[point][0] == 0){ /* end of tree */
 				x[0] = h.val[point][1] >>> 4;
 				y[0] = h.val[point][1] & 0xf;
@@ -455,6 +488,55 @@ final class HuffCodeTab{
 		return error;
 	}
 
+	/** Follows one bit from a node of the decoder tree. */
+	private static int next(int[][] val, int point, int bit){
+		while(val[point][bit] >= MXOFF) point += val[point][bit];
+		return point + val[point][bit];
+	}
+
+	/** Returns the length of the longest code in the decoder tree. */
+	private static int maxlen(int[][] val, int point){
+		if(val[point][0] == 0) return 0;
+		return 1 + Math.max(maxlen(val, next(val, point, 0)), maxlen(val, next(val, point, 1)));
+	}
+
+	/** Builds the lookup table of this Huffman table, or shares the one of a table with the same decoder tree. */
+	private void buildLookup(HuffCodeTab shared){
+		if(treelen == 0) return;
+		boolean quad = tablename0 == '3' && (tablename1 == '2' || tablename1 == '3');
+		if(shared != null && shared.val == val && (shared.linbits != 0) == (linbits != 0)){
+			lookbits = shared.lookbits;
+			lookup = shared.lookup;
+			return;
+		}
+		lookbits = Math.min(maxlen(val, 0) + (quad ? 4 : 2), MAX_LOOKBITS);
+		lookup = new int[1 << lookbits];
+		for(int i = 0; i < lookup.length; i++){
+			int point = 0, len = 0;
+			while(val[point][0] != 0 && len < lookbits) point = next(val, point, (i >>> (lookbits - 1 - len++)) & 1);
+			if(val[point][0] != 0){
+				lookup[i] = ~point;
+				continue;
+			}
+			int[] q = quad ? new int[]{(val[point][1] >> 3) & 1, (val[point][1] >> 2) & 1, (val[point][1] >> 1) & 1, val[point][1] & 1}
+					: new int[]{0, 0, val[point][1] >>> 4, val[point][1] & 0xf};
+			int signs = 0;
+			for(int c : q) if(c != 0) signs++;
+			boolean escape = !quad && linbits != 0 && (q[2] == xlen - 1 || q[3] == ylen - 1);
+			int entry;
+			if(!escape && len + signs <= lookbits){
+				for(int c = 0; c < 4; c++) if(q[c] != 0 && ((i >>> (lookbits - 1 - len++)) & 1) != 0) q[c] = -q[c];
+				entry = LOOKUP_FINAL;
+			}else{
+				/* Raw values; linbits and signs are read by the decoder. */
+				q[2] = val[point][1] >>> 4;
+				q[3] = val[point][1] & 0xf;
+				entry = 0;
+			}
+			lookup[i] = entry | (len << LOOKUP_LEN_SHIFT) | ((q[0] & 0x3f) << 18) | ((q[1] & 0x3f) << 12) | ((q[2] & 0x3f) << 6) | (q[3] & 0x3f);
+		}
+	}
+
 	public static void inithuff(){
 		if(ht != null) return;
 		ht = new HuffCodeTab[HTN];
@@ -492,5 +574,6 @@ final class HuffCodeTab{
 		ht[31] = new HuffCodeTab("31 ", 16, 16, 13, 8191, 24, null, null, ValTab24, 512);
 		ht[32] = new HuffCodeTab("32 ", 1, 16, 0, 0, -1, null, null, ValTab32, 31);
 		ht[33] = new HuffCodeTab("33 ", 1, 16, 0, 0, -1, null, null, ValTab33, 31);
+		for(int i = 0; i < HTN; i++) ht[i].buildLookup(i > 0 ? ht[i - 1] : null);
 	}
 }
\ No newline at end of file
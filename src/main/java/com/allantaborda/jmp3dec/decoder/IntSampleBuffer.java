@@ -0,0 +1,59 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/**
+ * Output buffer that keeps a frame of 24-bit or 32-bit samples as ints. The samples are those of 16 bits scaled to the sample size, so they keep the
+ * fraction that 16 bits would truncate, and are clipped to the range of the sample size.
+ */
+public class IntSampleBuffer extends PcmBuffer{
+	private int[] buffer;
+	private int bits;
+	/** Factor scaling a sample of the synthesis filter to the sample size. */
+	private float scale;
+	/** Largest value of a sample: the samples are clipped to it and its opposite. */
+	private float max;
+
+	/**
+	 * Creates a buffer of samples of 24 or 32 bits.
+	 * @param bits The sample size, 24 or 32.
+	 */
+	public IntSampleBuffer(int sample_frequency, int number_of_channels, int bits){
+		super(sample_frequency, number_of_channels);
+		if(bits != 24 && bits != 32) throw new IllegalArgumentException("Unsupported sample size: " + bits);
+		buffer = new int[OBUFFERSIZE];
+		this.bits = bits;
+		scale = 1 << (bits - 16);
+		max = (float) ((1L << (bits - 1)) - 1);
+	}
+
+	/** Returns the sample size, 24 or 32 bits. */
+	public int getSampleSizeInBits(){
+		return bits;
+	}
+
+	public int[] getBuffer(){
+		return buffer;
+	}
+
+	/** Takes a 16 Bit PCM sample. */
+	public void append(int channel, short value){
+		buffer[bufferp[channel]] = (int) (value * scale);
+		bufferp[channel] += channels;
+	}
+
+	public void appendBlock(int channel, float[] src, int off, int count, int stride){
+		int[] b = buffer;
+		int pos = bufferp[channel], ch = channels;
+		float scale = this.scale, max = this.max;
+		for(int end = off + count * stride; off < end; off += stride){
+			float fs = src[off] * scale;
+			// The largest 32-bit value rounds up as a float, and the cast saturates it back.
+			b[pos] = (int) (fs > max ? max : (fs < -max ? -max : fs));
+			pos += ch;
+		}
+		bufferp[channel] = pos;
+	}
+
+	void move(int from, int length){
+		System.arraycopy(buffer, from, buffer, 0, length);
+	}
+}
@@ -99,7 +99,8 @@ class LayerIDecoder implements FrameDecoder{
 				if((which_channels == OutputChannels.BOTH_CHANNELS) && (mode != Header.SINGLE_CHANNEL)) filter2.calculate_pcm_samples(buffer);
 			}while(!write_ready);
 		}while(!read_ready);
-
+		filter1.flush(buffer);
+		if((which_channels == OutputChannels.BOTH_CHANNELS) && (mode != Header.SINGLE_CHANNEL)) filter2.flush(buffer);
 	}
 
 	/** Abstract base class for subband classes of layer I and II. */
@@ -191,7 +192,10 @@ class LayerIDecoder implements FrameDecoder{
 		}
 
 		public boolean put_next_sample(int channels, SynthesisFilter filter1, SynthesisFilter filter2){
-			if(allocation != 0 && channels != OutputChannels.RIGHT_CHANNEL) filter1.input_sample((sample * factor + offset) * scalefactor, subbandnumber);
+			if(allocation != 0 && channels != OutputChannels.RIGHT_CHANNEL){
+				float sample1 = (sample * factor + offset) * scalefactor;
+				filter1.input_sample(channels == OutputChannels.DOWNMIX_CHANNELS ? sample1 * 0.5f : sample1, subbandnumber);
+			}
 			return true;
 		}
 	};
@@ -218,8 +222,12 @@ class LayerIDecoder implements FrameDecoder{
 		public boolean put_next_sample(int channels, SynthesisFilter filter1, SynthesisFilter filter2){
 			if(allocation != 0){
 				sample = sample * factor + offset; // requantization
-				if(channels == OutputChannels.BOTH_CHANNELS || channels == OutputChannels.LEFT_CHANNEL) filter1.input_sample(sample * scalefactor, subbandnumber);
-				if(channels == OutputChannels.BOTH_CHANNELS || channels == OutputChannels.RIGHT_CHANNEL) filter1.input_sample(sample * channel2_scalefactor, subbandnumber);
+				if(channels == OutputChannels.BOTH_CHANNELS){
+					filter1.input_sample(sample * scalefactor, subbandnumber);
+					filter2.input_sample(sample * channel2_scalefactor, subbandnumber);
+				}else if(channels == OutputChannels.LEFT_CHANNEL) filter1.input_sample(sample * scalefactor, subbandnumber);
+				else if(channels == OutputChannels.RIGHT_CHANNEL) filter1.input_sample(sample * channel2_scalefactor, subbandnumber);
+				else filter1.input_sample(sample * (scalefactor + channel2_scalefactor) * 0.5f, subbandnumber);
 			}
 			return true;
 		}
@@ -272,6 +280,7 @@ class LayerIDecoder implements FrameDecoder{
 			if(channel2_allocation != 0 && channels != OutputChannels.LEFT_CHANNEL){
 				float sample2 = (channel2_sample * channel2_factor + channel2_offset) * channel2_scalefactor;
 				if(channels == OutputChannels.BOTH_CHANNELS) filter2.input_sample(sample2, subbandnumber);
+				else if(channels == OutputChannels.DOWNMIX_CHANNELS) filter1.add_sample(sample2 * 0.5f, subbandnumber);
 				else filter1.input_sample(sample2, subbandnumber);
 			}
 			return true;
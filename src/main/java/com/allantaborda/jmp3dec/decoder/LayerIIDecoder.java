@@ -575,7 +575,7 @@ class LayerIIDecoder extends LayerIDecoder{
 				if(groupnumber <= 4) sample *= scalefactor1;
 				else if(groupnumber <= 8) sample *= scalefactor2;
 				else sample *= scalefactor3;
-				filter1.input_sample(sample, subbandnumber);
+				filter1.input_sample(channels == OutputChannels.DOWNMIX_CHANNELS ? sample * 0.5f : sample, subbandnumber);
 			}
 			return ++samplenumber == 3;
 		}
@@ -651,11 +651,16 @@ class LayerIIDecoder extends LayerIDecoder{
 					else if(groupnumber <= 8) sample *= scalefactor2;
 					else sample *= scalefactor3;
 					filter1.input_sample(sample, subbandnumber);
-				}else{
+				}else if(channels == OutputChannels.RIGHT_CHANNEL){
 					if(groupnumber <= 4) sample *= channel2_scalefactor1;
 					else if(groupnumber <= 8) sample *= channel2_scalefactor2;
 					else sample *= channel2_scalefactor3;
 					filter1.input_sample(sample, subbandnumber);
+				}else{
+					if(groupnumber <= 4) sample *= scalefactor1 + channel2_scalefactor1;
+					else if(groupnumber <= 8) sample *= scalefactor2 + channel2_scalefactor2;
+					else sample *= scalefactor3 + channel2_scalefactor3;
+					filter1.input_sample(sample * 0.5f, subbandnumber);
 				}
 			}
 			return ++samplenumber == 3;
@@ -745,6 +750,7 @@ class LayerIIDecoder extends LayerIDecoder{
 				else if(groupnumber <= 8) sample *= channel2_scalefactor2;
 				else sample *= channel2_scalefactor3;
 				if(channels == OutputChannels.BOTH_CHANNELS) filter2.input_sample(sample, subbandnumber);
+				else if(channels == OutputChannels.DOWNMIX_CHANNELS) filter1.add_sample(sample * 0.5f, subbandnumber);
 				else filter1.input_sample(sample, subbandnumber);
 			}
 			return ret;
@@ -55,7 +55,10 @@ final class LayerIIIDecoder implements FrameDecoder{
 			1.0536712128E-08f, 7.4505805969E-09f, 5.2683560639E-09f, 3.7252902985E-09f, 2.6341780319E-09f,
 			1.8626451492E-09f, 1.3170890160E-09f, 9.3132257462E-10f, 6.5854450798E-10f, 4.6566128731E-10f,
 			3.2927225399E-10f };
-	private static final float t_43[];
+	/** x^(4/3) for every quantized value, up to 15 plus the largest escape of 13 linbits. */
+	static final float t_43[];
+	/** 2^((global_gain - 210) / 4) for every global gain. */
+	private static final float global_gain_pow[];
 	private static final float io[][] = {
 			{ 1.0000000000E+00f, 8.4089641526E-01f, 7.0710678119E-01f, 5.9460355751E-01f, 5.0000000001E-01f,
 					4.2044820763E-01f, 3.5355339060E-01f, 2.9730177876E-01f, 2.5000000001E-01f, 2.1022410382E-01f,
@@ -73,9 +76,9 @@ final class LayerIIIDecoder implements FrameDecoder{
 					3.0517578127E-05f, 2.1579186439E-05f } };
 	private static final float TAN12[] = { 0.0f, 0.26794919f, 0.57735027f, 1.0f, 1.73205081f, 3.73205081f, 9.9999999e10f,
 			-3.73205081f, -1.73205081f, -1.0f, -0.57735027f, -0.26794919f, 0.0f, 0.26794919f, 0.57735027f, 1.0f };
-	private static final float cs[] = { 0.857492925712f, 0.881741997318f, 0.949628649103f, 0.983314592492f,
+	static final float cs[] = { 0.857492925712f, 0.881741997318f, 0.949628649103f, 0.983314592492f,
 			0.995517816065f, 0.999160558175f, 0.999899195243f, 0.999993155067f };
-	private static final float ca[] = { -0.5144957554270f, -0.4717319685650f, -0.3133774542040f, -0.1819131996110f,
+	static final float ca[] = { -0.5144957554270f, -0.4717319685650f, -0.3133774542040f, -0.1819131996110f,
 			-0.0945741925262f, -0.0409655828852f, -0.0141985685725f, -0.00369997467375f };
 	private static final float win[][] = { { -1.6141214951E-02f, -5.3603178919E-02f, -1.0070713296E-01f,
 			-1.6280817573E-01f, -4.9999999679E-01f, -3.8388735032E-01f, -6.2061144372E-01f, -1.1659756083E+00f,
@@ -116,12 +119,21 @@ final class LayerIIIDecoder implements FrameDecoder{
 	private int[] scalefac_buffer;
 	private int checkSumHuff;
 	private int[] is_1d;
-	private float[][][] ro;
-	private float[][][] lr;
+	/** Dequantized and stereo processed lines of each channel, line <code>sb * 18 + ss</code> being sample ss of subband sb. */
+	private float[][] ro;
+	private float[][] lr;
 	private float[] out_1d;
 	private float[][] prevblck;
 	private float[][] k;
 	private int[] nonzero;
+	/** Subbands of each channel whose overlap in prevblck may be non-zero. */
+	private int[] overlap_subbands = new int[2];
+	/** Whether the subbands after the last non-zero one are skipped; cleared only to compare with the whole pipeline. */
+	private boolean skip_zero_subbands = true;
+	/** Output of the first channel, when the channels are downmixed after the IMDCT. */
+	private float[] mix_1d;
+	/** Whether prevblck holds the overlap of each channel for the downmix, instead of the overlap of the downmix in the first channel. */
+	private boolean split_overlap;
 	private Bitstream stream;
 	private Header header;
 	private SynthesisFilter filter1, filter2;
@@ -154,17 +166,20 @@ final class LayerIIIDecoder implements FrameDecoder{
 	private SBI[] sfBandIndex; // Init in the constructor.
 
 	static{
-		t_43 = new float[8192];
-		for(int i = 0; i < 8192; i++) t_43[i] = (float) Math.pow(i, d43);
+		t_43 = new float[15 + (1 << 13)];
+		for(int i = 0; i < t_43.length; i++) t_43[i] = (float) Math.pow(i, d43);
+		global_gain_pow = new float[256];
+		for(int i = 0; i < 256; i++) global_gain_pow[i] = (float) Math.pow(2.0, (0.25 * (i - 210.0)));
 	}
 
 	// REVIEW: these constructor arguments should be moved to the decodeFrame() method, where possible, so that one
 	public LayerIIIDecoder(Bitstream stream0, Header header0, SynthesisFilter filtera, SynthesisFilter filterb, Obuffer buffer0, int which_ch0){
 		HuffCodeTab.inithuff();
 		is_1d = new int[SBLIMIT * SSLIMIT + 4];
-		ro = new float[2][SBLIMIT][SSLIMIT];
-		lr = new float[2][SBLIMIT][SSLIMIT];
+		ro = new float[2][SBLIMIT * SSLIMIT];
+		lr = new float[2][SBLIMIT * SSLIMIT];
 		out_1d = new float[SBLIMIT * SSLIMIT];
+		mix_1d = new float[SBLIMIT * SSLIMIT];
 		prevblck = new float[2][SBLIMIT * SSLIMIT];
 		k = new float[2][SBLIMIT * SSLIMIT];
 		nonzero = new int[2];
@@ -249,10 +264,23 @@ final class LayerIIIDecoder implements FrameDecoder{
 		frame_start = 0;
 		for(int ch = 0; ch < 2; ch++){
 			for(int j = 0; j < 576; j++) prevblck[ch][j] = 0.0f;
+			overlap_subbands[ch] = 0;
 		}
 		br = new BitReserve();
 	}
 
+	void setSkipZeroSubbands(boolean skip){
+		skip_zero_subbands = skip;
+	}
+
+	/** Adds the main data of the current frame to the bit reservoir without decoding the frame, so a later frame can use it after a seek. */
+	void feed_reservoir(){
+		int nSlots = header.slots();
+		get_side_info();
+		for(int i = 0; i < nSlots; i++) br.hputbuf(stream.get_bits(8));
+		frame_start += nSlots;
+	}
+
 	public void decodeFrame(){
 		int nSlots = header.slots();
 		int flush_main, gr, ch, ss, sb, sb18, main_data_end, bytes_to_discard, i;
@@ -281,35 +309,53 @@ final class LayerIIIDecoder implements FrameDecoder{
 				dequantize_sample(ro[ch], ch, gr);
 			}
 			stereo(gr);
-			if(which_channels == OutputChannels.DOWNMIX_CHANNELS && channels > 1) do_downmix();
-			for(ch = first_channel; ch <= last_channel; ch++){
+			// The downmix is made before the IMDCT when both channels have the same blocks, else after it.
+			boolean mix_after = false;
+			if(which_channels == OutputChannels.DOWNMIX_CHANNELS && channels > 1){
+				mix_after = !same_blocks(gr);
+				split_overlap(mix_after);
+				if(!mix_after) do_downmix();
+			}
+			// Stereo processing mixes the channels, so the lines of both are non-zero up to the larger count.
+			int lines = channels == 2 ? Math.max(nonzero[0], nonzero[1]) : nonzero[0];
+			int mix_subbands = 0, sblimit = filter1.subband_limit();
+			for(ch = first_channel; ch <= (mix_after ? 1 : last_channel); ch++){
 				reorder(lr[ch], ch, gr);
-				antialias(ch, gr);
-				hybrid(ch, gr);
-				for(sb18 = 18; sb18 < 576; sb18 += 36){ // Frequency inversion
+				int subbands = nonzero_subbands(lines, ch, gr);
+				antialias(ch, gr, subbands);
+				// The butterflies of the last pair of subbands spread into the next one. Only the subbands of the output rate are transformed.
+				subbands = Math.min(subbands + 1, sblimit);
+				int out_subbands = Math.max(subbands, overlap_subbands[ch]);
+				hybrid(ch, gr, subbands);
+				for(sb18 = 18; sb18 < out_subbands * SSLIMIT; sb18 += 36){ // Frequency inversion
 					for(ss = 1; ss < SSLIMIT; ss += 2) out_1d[sb18 + ss] = -out_1d[sb18 + ss];
 				}
-				if(ch == 0 || which_channels == OutputChannels.RIGHT_CHANNEL){
-					for(ss = 0; ss < SSLIMIT; ss++){ // Polyphase synthesis
-						sb = 0;
-						for(sb18 = 0; sb18 < 576; sb18 += 18){
-							samples1[sb] = out_1d[sb18 + ss];
-							sb++;
-						}
-						filter1.input_samples(samples1);
-						filter1.calculate_pcm_samples(buffer);
+				if(mix_after){
+					if(ch == 0){
+						System.arraycopy(out_1d, 0, mix_1d, 0, out_subbands * SSLIMIT);
+						mix_subbands = out_subbands;
+						continue;
 					}
+					for(i = 0; i < out_subbands * SSLIMIT; i++) out_1d[i] = (out_1d[i] + (i < mix_subbands * SSLIMIT ? mix_1d[i] : 0.0f)) * 0.5f;
+					for(; i < mix_subbands * SSLIMIT; i++) out_1d[i] = mix_1d[i] * 0.5f;
+					out_subbands = Math.max(out_subbands, mix_subbands);
+				}
+				float[] samples;
+				SynthesisFilter filter;
+				if(ch == 0 || which_channels != OutputChannels.BOTH_CHANNELS){
+					samples = samples1;
+					filter = filter1;
 				}else{
-					for(ss = 0; ss < SSLIMIT; ss++){ // Polyphase synthesis
-						sb = 0;
-						for(sb18 = 0; sb18 < 576; sb18 += 18){
-							samples2[sb] = out_1d[sb18 + ss];
-							sb++;
-						}
-						filter2.input_samples(samples2);
-						filter2.calculate_pcm_samples(buffer);
-					}
+					samples = samples2;
+					filter = filter2;
 				}
+				for(sb = out_subbands; sb < SBLIMIT; sb++) samples[sb] = 0.0f;
+				for(ss = 0; ss < SSLIMIT; ss++){ // Polyphase synthesis
+					for(sb = 0, sb18 = ss; sb < out_subbands; sb++, sb18 += 18) samples[sb] = out_1d[sb18];
+					filter.input_samples(samples);
+					filter.calculate_pcm_samples(buffer);
+				}
+				filter.flush(buffer);
 			}
 		}
 	}
@@ -580,9 +626,12 @@ final class LayerIIIDecoder implements FrameDecoder{
 		// Dismiss stuffing bits
 		if(num_bits < part2_3_end) br.hgetbits(part2_3_end - num_bits);
 		// Zero out rest
-		if(index < 576) nonzero[ch] = index;
-		else nonzero[ch] = 576;
+		if(index > 576) index = 576;
 		if(index < 0) index = 0;
+		// The count1 area often ends with zero quadruples, which are left out of the non-zero lines.
+		int last = index;
+		while(last > 0 && is_1d[last - 1] == 0) last--;
+		nonzero[ch] = last;
 		// may not be necessary
 		for(; index < 576; index++) is_1d[index] = 0;
 	}
@@ -600,114 +649,57 @@ final class LayerIIIDecoder implements FrameDecoder{
 		}
 	}
 
-	private void dequantize_sample(float xr[][], int ch, int gr){
+	private void dequantize_sample(float[] xr, int ch, int gr){
 		GrInfoS gr_info = (si.ch[ch].gr[gr]);
-		int cb = 0, next_cb_boundary, cb_begin = 0, cb_width = 0, index = 0, t_index;
-		float g_gain;
-		float[][] xr_1d = xr;
-		// choose correct scalefactor band per block type, initalize boundary
-		if(gr_info.window_switching_flag != 0 && gr_info.block_type == 2){
-			if(gr_info.mixed_block_flag != 0) next_cb_boundary = sfBandIndex[sfreq].l[1]; // LONG blocks: 0,1,3
-			else{
-				cb_width = sfBandIndex[sfreq].s[1];
-				next_cb_boundary = (cb_width << 2) - cb_width;
-				cb_begin = 0;
-			}
-		}else{
-			next_cb_boundary = sfBandIndex[sfreq].l[1]; // LONG blocks: 0,1,3
-		}
-		// Compute overall (global) scaling.
-		g_gain = (float) Math.pow(2.0, (0.25 * (gr_info.global_gain - 210.0)));
-		for(int j = 0; j < nonzero[ch]; j++){
-			// Modif E.B 02/22/99
-			int reste = j % SSLIMIT, quotien = (j - reste) / SSLIMIT;
-			if(is_1d[j] == 0) xr_1d[quotien][reste] = 0.0f;
-			else{
-				int abv = is_1d[j];
-				// Pow Array fix (11/17/04)
-				if(abv < t_43.length){
-					if(is_1d[j] > 0) xr_1d[quotien][reste] = g_gain * t_43[abv];
-					else{
-						if(-abv < t_43.length) xr_1d[quotien][reste] = -g_gain * t_43[-abv];
-						else xr_1d[quotien][reste] = -g_gain * (float) Math.pow(-abv, d43);
-					}
-				}else{
-					if(is_1d[j] > 0) xr_1d[quotien][reste] = g_gain * (float) Math.pow(abv, d43);
-					else xr_1d[quotien][reste] = -g_gain * (float) Math.pow(-abv, d43);
-				}
-			}
+		int[] l = sfBandIndex[sfreq].l, s = sfBandIndex[sfreq].s;
+		int end = nonzero[ch], scale = gr_info.scalefac_scale, j = 0, long_end;
+		// Overall (global) scaling, multiplied into the gain of each band.
+		float g_gain = global_gain_pow[gr_info.global_gain];
+		// Long blocks are scaled by long bands; short blocks by short bands of 3 windows, after the first 2 subbands of mixed blocks.
+		if(gr_info.window_switching_flag != 0 && gr_info.block_type == 2) long_end = gr_info.mixed_block_flag != 0 ? (s[3] << 1) + s[3] : 0;
+		else long_end = 576;
+		for(int cb = 0; j < end && j < long_end; cb++){
+			int idx = scalefac[ch].l[cb];
+			if(gr_info.preflag != 0) idx += pretab[cb];
+			int band_end = Math.min(Math.min(l[cb + 1], long_end), end);
+			dequantize_lines(xr, j, band_end, g_gain * two_to_negative_half_pow[idx << scale]);
+			j = band_end;
 		}
-		// apply formula per block type
-		for(int j = 0; j < nonzero[ch]; j++){
-			// Modif E.B 02/22/99
-			int reste = j % SSLIMIT, quotien = (j - reste) / SSLIMIT;
-			if(index == next_cb_boundary){ /* Adjust critical band boundary */
-				if(gr_info.window_switching_flag != 0 && gr_info.block_type == 2){
-					if(gr_info.mixed_block_flag != 0){
-						if(index == sfBandIndex[sfreq].l[8]){
-							next_cb_boundary = sfBandIndex[sfreq].s[4];
-							next_cb_boundary = (next_cb_boundary << 2) - next_cb_boundary;
-							cb = 3;
-							cb_width = sfBandIndex[sfreq].s[4] - sfBandIndex[sfreq].s[3];
-							cb_begin = sfBandIndex[sfreq].s[3];
-							cb_begin = (cb_begin << 2) - cb_begin;
-						}else if(index < sfBandIndex[sfreq].l[8]){
-							next_cb_boundary = sfBandIndex[sfreq].l[(++cb) + 1];
-						}else{
-							next_cb_boundary = sfBandIndex[sfreq].s[(++cb) + 1];
-							next_cb_boundary = (next_cb_boundary << 2) - next_cb_boundary;
-							cb_begin = sfBandIndex[sfreq].s[cb];
-							cb_width = sfBandIndex[sfreq].s[cb + 1] - cb_begin;
-							cb_begin = (cb_begin << 2) - cb_begin;
-						}
-					}else{
-						next_cb_boundary = sfBandIndex[sfreq].s[(++cb) + 1];
-						next_cb_boundary = (next_cb_boundary << 2) - next_cb_boundary;
-						cb_begin = sfBandIndex[sfreq].s[cb];
-						cb_width = sfBandIndex[sfreq].s[cb + 1] - cb_begin;
-						cb_begin = (cb_begin << 2) - cb_begin;
-					}
-				}else{ // long blocks
-					next_cb_boundary = sfBandIndex[sfreq].l[(++cb) + 1];
-				}
-			}
-			// Do long/short dependent scaling operations
-			if(gr_info.window_switching_flag != 0 && ((gr_info.block_type == 2 && gr_info.mixed_block_flag == 0)
-					|| (gr_info.block_type == 2 && gr_info.mixed_block_flag != 0 && j >= 36))){
-				t_index = (index - cb_begin) / cb_width;
-				int idx = scalefac[ch].s[t_index][cb] << gr_info.scalefac_scale;
-				idx += (gr_info.subblock_gain[t_index] << 2);
-				xr_1d[quotien][reste] *= two_to_negative_half_pow[idx];
-			}else{ // LONG block types 0,1,3 & 1st 2 subbands of switched blocks
-				int idx = scalefac[ch].l[cb];
-				if(gr_info.preflag != 0) idx += pretab[cb];
-				idx = idx << gr_info.scalefac_scale;
-				xr_1d[quotien][reste] *= two_to_negative_half_pow[idx];
+		for(int cb = long_end > 0 ? 3 : 0; j < end; cb++){
+			int width = s[cb + 1] - s[cb];
+			for(int win = 0; win < 3 && j < end; win++){
+				int idx = (scalefac[ch].s[win][cb] << scale) + (gr_info.subblock_gain[win] << 2);
+				int band_end = Math.min(j + width, end);
+				dequantize_lines(xr, j, band_end, g_gain * two_to_negative_half_pow[idx]);
+				j = band_end;
 			}
-			index++;
 		}
-		for(int j = nonzero[ch]; j < 576; j++){
-			// Modif E.B 02/22/99
-			int reste = j % SSLIMIT, quotien = (j - reste) / SSLIMIT;
-			if(reste < 0) reste = 0;
-			if(quotien < 0) quotien = 0;
-			xr_1d[quotien][reste] = 0.0f;
+		for(; j < 576; j++) xr[j] = 0.0f;
+	}
+
+	/** Requantizes the lines from <code>from</code> to <code>to</code> of a band with its gain. */
+	private void dequantize_lines(float[] xr, int from, int to, float gain){
+		if(VectorKernels.ENABLED) VectorKernels.dequantize_lines(xr, is_1d, from, to, gain);
+		else dequantize_lines(xr, is_1d, from, to, gain);
+	}
+
+	/** Requantizes the lines from <code>from</code> to <code>to</code> of a band: line j is sign(is[j]) * |is[j]|^(4/3) * gain. */
+	static void dequantize_lines(float[] xr, int[] is, int from, int to, float gain){
+		float[] pow43 = t_43;
+		for(int j = from; j < to; j++){
+			int v = is[j];
+			xr[j] = v >= 0 ? pow43[v] * gain : -(pow43[-v] * gain);
 		}
 	}
 
-	private void reorder(float xr[][], int ch, int gr){
+	private void reorder(float[] xr, int ch, int gr){
 		GrInfoS gr_info = (si.ch[ch].gr[gr]);
 		int freq, freq3, sfb, sfb_start, sfb_lines, src_line, des_line;
-		float[][] xr_1d = xr;
 		if(gr_info.window_switching_flag != 0 && gr_info.block_type == 2){
-			for(int c = 0; c < 576; c++) out_1d[c] = 0.0f;
 			if(gr_info.mixed_block_flag != 0){
+				for(int c = 36; c < 576; c++) out_1d[c] = 0.0f;
 				// NO REORDER FOR LOW 2 SUBBANDS
-				for(int c = 0; c < 36; c++){
-					// Modif E.B 02/22/99
-					int reste = c % SSLIMIT, quotien = (c - reste) / SSLIMIT;
-					out_1d[c] = xr_1d[quotien][reste];
-				}
+				System.arraycopy(xr, 0, out_1d, 0, 36);
 				for(sfb = 3; sfb < 13; sfb++){
 					sfb_start = sfBandIndex[sfreq].s[sfb];
 					sfb_lines = sfBandIndex[sfreq].s[sfb + 1] - sfb_start;
@@ -715,47 +707,24 @@ final class LayerIIIDecoder implements FrameDecoder{
 					for(freq = 0, freq3 = 0; freq < sfb_lines; freq++, freq3 += 3){
 						src_line = sfb_start3 + freq;
 						des_line = sfb_start3 + freq3;
-						// Modif E.B 02/22/99
-						int reste = src_line % SSLIMIT;
-						int quotien = (src_line - reste) / SSLIMIT;
-						out_1d[des_line] = xr_1d[quotien][reste];
-						src_line += sfb_lines;
-						des_line++;
-						reste = src_line % SSLIMIT;
-						quotien = (src_line - reste) / SSLIMIT;
-						out_1d[des_line] = xr_1d[quotien][reste];
-						src_line += sfb_lines;
-						des_line++;
-						reste = src_line % SSLIMIT;
-						quotien = (src_line - reste) / SSLIMIT;
-						out_1d[des_line] = xr_1d[quotien][reste];
+						out_1d[des_line] = xr[src_line];
+						out_1d[des_line + 1] = xr[src_line + sfb_lines];
+						out_1d[des_line + 2] = xr[src_line + (sfb_lines << 1)];
 					}
 				}
 			}else{ // pure short
-				for(int c = 0; c < 576; c++){
-					int j = reorder_table[sfreq][c], reste = j % SSLIMIT, quotien = (j - reste) / SSLIMIT;
-					out_1d[c] = xr_1d[quotien][reste];
-				}
+				int[] table = reorder_table[sfreq];
+				for(int c = 0; c < 576; c++) out_1d[c] = xr[table[c]];
 			}
 		}else{ // long blocks
-			for(int c = 0; c < 576; c++){
-				// Modif E.B 02/22/99
-				int reste = c % SSLIMIT, quotien = (c - reste) / SSLIMIT;
-				out_1d[c] = xr_1d[quotien][reste];
-			}
+			System.arraycopy(xr, 0, out_1d, 0, 576);
 		}
 	}
 
 	private void stereo(int gr){
 		int sb, ss;
-		if(channels == 1){ // mono , bypass xr[0][][] to lr[0][][]
-			for(sb = 0; sb < SBLIMIT; sb++){
-				for(ss = 0; ss < SSLIMIT; ss += 3){
-					lr[0][sb][ss] = ro[0][sb][ss];
-					lr[0][sb][ss + 1] = ro[0][sb][ss + 1];
-					lr[0][sb][ss + 2] = ro[0][sb][ss + 2];
-				}
-			}
+		if(channels == 1){ // mono , bypass xr[0][] to lr[0][]
+			System.arraycopy(ro[0], 0, lr[0], 0, 576);
 		}else{
 			GrInfoS gr_info = si.ch[0].gr[gr];
 			int mode_ext = header.mode_extension(), sfb, i, lines, temp, temp2;
@@ -763,12 +732,12 @@ final class LayerIIIDecoder implements FrameDecoder{
 			boolean i_stereo = (header.mode() == Header.JOINT_STEREO && (mode_ext & 0x1) != 0);
 			boolean lsf = header.version() == Header.MPEG2_LSF || header.version() == Header.MPEG25_LSF; // SZD
 			int io_type = gr_info.scalefac_compress & 1;
-			// initialization
-			for(i = 0; i < 576; i++){
-				is_pos[i] = 7;
-				is_ratio[i] = 0.0f;
-			}
 			if(i_stereo){
+				// initialization
+				for(i = 0; i < 576; i++){
+					is_pos[i] = 7;
+					is_ratio[i] = 0.0f;
+				}
 				if(gr_info.window_switching_flag != 0 && gr_info.block_type == 2){
 					if(gr_info.mixed_block_flag != 0){
 						int max_sfb = 0;
@@ -779,7 +748,7 @@ final class LayerIIIDecoder implements FrameDecoder{
 								lines = sfBandIndex[sfreq].s[sfb + 1] - i;
 								i = (i << 2) - i + (j + 1) * lines - 1;
 								while(lines > 0){
-									if(ro[1][i / 18][i % 18] != 0.0f){
+									if(ro[1][i] != 0.0f){
 										sfbcnt = sfb;
 										sfb = -10;
 										lines = -10;
@@ -826,7 +795,7 @@ final class LayerIIIDecoder implements FrameDecoder{
 							ss = 17;
 							sb = -1;
 							while(i >= 0){
-								if(ro[1][i][ss] != 0.0f){
+								if(ro[1][i * SSLIMIT + ss] != 0.0f){
 									sb = (i << 4) + (i << 1) + ss;
 									i = -1;
 								}else{
@@ -861,7 +830,7 @@ final class LayerIIIDecoder implements FrameDecoder{
 								lines = sfBandIndex[sfreq].s[sfb + 1] - temp;
 								i = (temp << 2) - temp + (j + 1) * lines - 1;
 								while(lines > 0){
-									if(ro[1][i / 18][i % 18] != 0.0f){
+									if(ro[1][i] != 0.0f){
 										sfbcnt = sfb;
 										sfb = -10;
 										lines = -10;
@@ -908,7 +877,7 @@ final class LayerIIIDecoder implements FrameDecoder{
 					ss = 17;
 					sb = 0;
 					while(i >= 0){
-						if(ro[1][i][ss] != 0.0f){
+						if(ro[1][i * SSLIMIT + ss] != 0.0f){
 							sb = (i << 4) + (i << 1) + ss;
 							i = -1;
 						}else{
@@ -947,55 +916,96 @@ final class LayerIIIDecoder implements FrameDecoder{
 					}
 				}
 			}
-			i = 0;
-			for(sb = 0; sb < SBLIMIT; sb++){
-				for(ss = 0; ss < SSLIMIT; ss++){
-					if(is_pos[i] == 7){
-						if(ms_stereo){
-							lr[0][sb][ss] = (ro[0][sb][ss] + ro[1][sb][ss]) * 0.707106781f;
-							lr[1][sb][ss] = (ro[0][sb][ss] - ro[1][sb][ss]) * 0.707106781f;
-						}else{
-							lr[0][sb][ss] = ro[0][sb][ss];
-							lr[1][sb][ss] = ro[1][sb][ss];
-						}
-					}else if(i_stereo){
-						if(lsf){
-							lr[0][sb][ss] = ro[0][sb][ss] * k[0][i];
-							lr[1][sb][ss] = ro[0][sb][ss] * k[1][i];
-						}else{
-							lr[1][sb][ss] = ro[0][sb][ss] / (1 + is_ratio[i]);
-							lr[0][sb][ss] = lr[1][sb][ss] * is_ratio[i];
-						}
+			float[] ro0 = ro[0], ro1 = ro[1], lr0 = lr[0], lr1 = lr[1];
+			if(!i_stereo){
+				// No intensity stereo: every line is 7, so the lines are processed without checking is_pos.
+				if(ms_stereo){
+					for(i = 0; i < 576; i++){
+						lr0[i] = (ro0[i] + ro1[i]) * 0.707106781f;
+						lr1[i] = (ro0[i] - ro1[i]) * 0.707106781f;
+					}
+				}else{
+					System.arraycopy(ro0, 0, lr0, 0, 576);
+					System.arraycopy(ro1, 0, lr1, 0, 576);
+				}
+				return;
+			}
+			for(i = 0; i < 576; i++){
+				if(is_pos[i] == 7){
+					if(ms_stereo){
+						lr0[i] = (ro0[i] + ro1[i]) * 0.707106781f;
+						lr1[i] = (ro0[i] - ro1[i]) * 0.707106781f;
+					}else{
+						lr0[i] = ro0[i];
+						lr1[i] = ro1[i];
 					}
-					i++;
+				}else if(lsf){
+					lr0[i] = ro0[i] * k[0][i];
+					lr1[i] = ro0[i] * k[1][i];
+				}else{
+					lr1[i] = ro0[i] / (1 + is_ratio[i]);
+					lr0[i] = lr1[i] * is_ratio[i];
 				}
 			}
 		}
 	}
 
-	private void antialias(int ch, int gr){
-		int sb18, ss, sb18lim;
+	/**
+	 * Returns the number of subbands of a channel that may hold non-zero lines after reorder. Short blocks are reordered within their bands, so the
+	 * count of lines is rounded up to the end of its short band.
+	 */
+	private int nonzero_subbands(int lines, int ch, int gr){
+		if(!skip_zero_subbands) return SBLIMIT;
+		GrInfoS gr_info = (si.ch[ch].gr[gr]);
+		if(gr_info.window_switching_flag != 0 && gr_info.block_type == 2 && (gr_info.mixed_block_flag == 0 || lines > 36)){
+			int[] s = sfBandIndex[sfreq].s;
+			int cb = 0;
+			while(cb < 12 && (s[cb + 1] << 1) + s[cb + 1] < lines) cb++;
+			lines = (s[cb + 1] << 1) + s[cb + 1];
+		}
+		return (lines + SSLIMIT - 1) / SSLIMIT;
+	}
+
+	/** Reduces the aliasing between the pairs of subbands, only up to the last non-zero subband. */
+	private void antialias(int ch, int gr, int subbands){
+		int sb18lim;
 		GrInfoS gr_info = (si.ch[ch].gr[gr]);
 		// 31 alias-reduction operations between each pair of sub-bands with 8 butterflies between each pair
 		if(gr_info.window_switching_flag != 0 && gr_info.block_type == 2 && gr_info.mixed_block_flag == 0) return;
 		if(gr_info.window_switching_flag != 0 && gr_info.mixed_block_flag != 0 && gr_info.block_type == 2) sb18lim = 18;
 		else sb18lim = 558;
-		for(sb18 = 0; sb18 < sb18lim; sb18 += 18){
-			for(ss = 0; ss < 8; ss++){
+		sb18lim = Math.min(sb18lim, subbands * SSLIMIT);
+		if(VectorKernels.ENABLED) VectorKernels.antialias(out_1d, sb18lim);
+		else antialias(out_1d, sb18lim);
+	}
+
+	/** Applies the 8 alias-reduction butterflies between each pair of subbands up to line <code>sb18lim</code>. */
+	static void antialias(float[] x, int sb18lim){
+		for(int sb18 = 0; sb18 < sb18lim; sb18 += 18){
+			for(int ss = 0; ss < 8; ss++){
 				int src_idx1 = sb18 + 17 - ss, src_idx2 = sb18 + 18 + ss;
-				float bu = out_1d[src_idx1], bd = out_1d[src_idx2];
-				out_1d[src_idx1] = (bu * cs[ss]) - (bd * ca[ss]);
-				out_1d[src_idx2] = (bd * cs[ss]) + (bu * ca[ss]);
+				float bu = x[src_idx1], bd = x[src_idx2];
+				x[src_idx1] = (bu * cs[ss]) - (bd * ca[ss]);
+				x[src_idx2] = (bd * cs[ss]) + (bu * ca[ss]);
 			}
 		}
 	}
 
-	private void hybrid(int ch, int gr){
+	/**
+	 * Applies the IMDCT to the non-zero subbands and adds the overlap of the previous granule. The IMDCT of the other subbands is zero, so only the
+	 * overlap left in them is moved to the output.
+	 */
+	private void hybrid(int ch, int gr, int subbands){
 		int bt, sb18;
 		GrInfoS gr_info = (si.ch[ch].gr[gr]);
 		float[] tsOut;
 		float[][] prvblk;
-		for(sb18 = 0; sb18 < 576; sb18 += 18){
+		for(sb18 = subbands * SSLIMIT; sb18 < overlap_subbands[ch] * SSLIMIT; sb18++){
+			out_1d[sb18] = prevblck[ch][sb18];
+			prevblck[ch][sb18] = 0.0f;
+		}
+		overlap_subbands[ch] = subbands;
+		for(sb18 = 0; sb18 < subbands * SSLIMIT; sb18 += 18){
 			bt = (gr_info.window_switching_flag != 0 && gr_info.mixed_block_flag != 0 && sb18 < 36) ? 0 : gr_info.block_type;
 			tsOut = out_1d;
 			// Modif E.B 02/22/99
@@ -1012,14 +1022,32 @@ final class LayerIIIDecoder implements FrameDecoder{
 		}
 	}
 
-	private void do_downmix(){
-		for(int sb = 0; sb < SSLIMIT; sb++){
-			for(int ss = 0; ss < SSLIMIT; ss += 3){
-				lr[0][sb][ss] = (lr[0][sb][ss] + lr[1][sb][ss]) * 0.5f;
-				lr[0][sb][ss + 1] = (lr[0][sb][ss + 1] + lr[1][sb][ss + 1]) * 0.5f;
-				lr[0][sb][ss + 2] = (lr[0][sb][ss + 2] + lr[1][sb][ss + 2]) * 0.5f;
-			}
+	/** Returns true if both channels of a granule have the same block type, so they can be downmixed before reorder and IMDCT. */
+	private boolean same_blocks(int gr){
+		GrInfoS gr0 = si.ch[0].gr[gr], gr1 = si.ch[1].gr[gr];
+		return gr0.window_switching_flag == gr1.window_switching_flag && gr0.block_type == gr1.block_type && gr0.mixed_block_flag == gr1.mixed_block_flag;
+	}
+
+	/**
+	 * Switches the overlap of the downmix between the overlap of the downmix in the first channel and the overlap of each channel. The downmix of the
+	 * overlaps of each channel is the overlap of the downmix, so each channel can start from the overlap of the downmix.
+	 */
+	private void split_overlap(boolean split){
+		if(split == split_overlap) return;
+		float[] p0 = prevblck[0], p1 = prevblck[1];
+		if(split){
+			System.arraycopy(p0, 0, p1, 0, 576);
+			overlap_subbands[1] = overlap_subbands[0];
+		}else{
+			for(int i = 0; i < 576; i++) p0[i] = (p0[i] + p1[i]) * 0.5f;
+			overlap_subbands[0] = Math.max(overlap_subbands[0], overlap_subbands[1]);
 		}
+		split_overlap = split;
+	}
+
+	private void do_downmix(){
+		float[] lr0 = lr[0], lr1 = lr[1];
+		for(int i = 0; i < 576; i++) lr0[i] = (lr0[i] + lr1[i]) * 0.5f;
 	}
 
 	/** Fast INV_MDCT. */
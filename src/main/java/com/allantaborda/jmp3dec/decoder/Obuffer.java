@@ -42,6 +42,32 @@ public interface Obuffer{
 	/** Accepts 32 new PCM samples. */
 	void appendSamples(int channel, float[] f);
 
+	/**
+	 * Accepts the samples at multiples of <code>step</code> of 32 new PCM samples, when the output is at 1/2 or 1/4 of the sample rate. By default,
+	 * they're clipped to 16 bits and taken one at a time.
+	 */
+	default void appendSamples(int channel, float[] f, int step){
+		for(int i = 0; i < 32; i += step){
+			float fs = f[i];
+			append(channel, (short) (fs > 32767.0f ? 32767.0f : (fs < -32767.0f ? -32767.0f : fs)));
+		}
+	}
+
+	/**
+	 * Accepts the samples of a channel computed by a synthesis filter since its last flush, in groups of 32: the samples are
+	 * <code>src[off]</code>, <code>src[off + stride]</code> and so on, where the stride is the downsampling, 1, 2 or 4. By default, they're
+	 * passed 32 at a time to <code>appendSamples</code>, in an array reused by the thread.
+	 * @param count The number of samples, a multiple of 32 / stride.
+	 */
+	default void appendBlock(int channel, float[] src, int off, int count, int stride){
+		float[] f = BlockSamples.get();
+		for(int end = off + count * stride; off < end; off += 32){
+			System.arraycopy(src, off, f, 0, 32);
+			if(stride == 1) appendSamples(channel, f);
+			else appendSamples(channel, f, stride);
+		}
+	}
+
 	/** Takes a 16 Bit PCM sample. */
 	void append(int channel, short value);
 
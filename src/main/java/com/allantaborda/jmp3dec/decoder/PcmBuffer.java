@@ -0,0 +1,57 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/** Output buffer that keeps the samples of a frame interleaved in an array, which the decoder trims to the samples output. */
+abstract class PcmBuffer implements Obuffer{
+	/** Index in the array of the next sample of each channel. */
+	int[] bufferp;
+	int channels;
+	private int frequency;
+
+	PcmBuffer(int sample_frequency, int number_of_channels){
+		bufferp = new int[MAXCHANNELS];
+		channels = number_of_channels;
+		frequency = sample_frequency;
+		clear_buffer();
+	}
+
+	public int getChannelCount(){
+		return channels;
+	}
+
+	public int getSampleFrequency(){
+		return frequency;
+	}
+
+	/** Returns the number of values of the array holding samples, that is, the samples per channel times the channels. */
+	public int getBufferLength(){
+		return bufferp[0];
+	}
+
+	public void appendSamples(int channel, float[] f){
+		appendBlock(channel, f, 0, 32, 1);
+	}
+
+	public void appendSamples(int channel, float[] f, int step){
+		appendBlock(channel, f, 0, 32 / step, step);
+	}
+
+	/** Writes the samples interleaved, at the position of the channel, in one pass. */
+	public abstract void appendBlock(int channel, float[] src, int off, int count, int stride);
+
+	/** Keeps only <code>length</code> samples per channel, from sample <code>skip</code>. */
+	void trim(int skip, int length){
+		// A frame may hold fewer samples, as the first frames of Layer III without their main data.
+		int samples = bufferp[0] / channels;
+		skip = Math.min(skip, samples);
+		length = Math.min(length, samples - skip);
+		if(skip > 0) move(skip * channels, length * channels);
+		for(int i = 0; i < channels; ++i) bufferp[i] = length * channels + i;
+	}
+
+	/** Moves <code>length</code> values of the array, from index <code>from</code>, to its start. */
+	abstract void move(int from, int length);
+
+	public void clear_buffer(){
+		for(int i = 0; i < channels; ++i) bufferp[i] = i;
+	}
+}
@@ -0,0 +1,390 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/**
+ * The synthesis windowing of the reference implementation. The vector V is kept in two buffers of 32 rows of 16 values, written at a rotating
+ * column, and read by one of 16 unrolled kernels chosen by that column.
+ */
+final class ReferenceSynthesisEngine implements SynthesisEngine{
+	/** d[] split into subarrays of length 16. This provides for more faster access by allowing a block of 16 to be addressed with constant offset. */
+	private static final float[][] d16 = splitArray(SynthesisFilter.d_data, 16);
+	private float[] v1 = new float[512];
+	private float[] v2 = new float[512];
+	private float[] actual_v; // v1 or v2
+	private int actual_write_pos; // 0-15
+
+	ReferenceSynthesisEngine(){
+		reset();
+	}
+
+	@Override
+	public void reset(){
+		for(int p = 0; p < 512; p++) v1[p] = v2[p] = 0.0f;
+		actual_v = v1;
+		actual_write_pos = 15;
+	}
+
+	@Override
+	public void compute_pcm_samples(float[] v, float scalefactor, int step, float[] out){
+		float dest[] = actual_v;
+		int pos = actual_write_pos;
+		dest[0 + pos] = v[0];
+		dest[16 + pos] = v[1];
+		dest[32 + pos] = v[2];
+		dest[48 + pos] = v[3];
+		dest[64 + pos] = v[4];
+		dest[80 + pos] = v[5];
+		dest[96 + pos] = v[6];
+		dest[112 + pos] = v[7];
+		dest[128 + pos] = v[8];
+		dest[144 + pos] = v[9];
+		dest[160 + pos] = v[10];
+		dest[176 + pos] = v[11];
+		dest[192 + pos] = v[12];
+		dest[208 + pos] = v[13];
+		dest[224 + pos] = v[14];
+		dest[240 + pos] = v[15];
+		// V[16] is always 0.0:
+		dest[256 + pos] = 0.0f;
+		// insert V[17-31] (== -new_v[15-1]) into actual v:
+		dest[272 + pos] = -v[15];
+		dest[288 + pos] = -v[14];
+		dest[304 + pos] = -v[13];
+		dest[320 + pos] = -v[12];
+		dest[336 + pos] = -v[11];
+		dest[352 + pos] = -v[10];
+		dest[368 + pos] = -v[9];
+		dest[384 + pos] = -v[8];
+		dest[400 + pos] = -v[7];
+		dest[416 + pos] = -v[6];
+		dest[432 + pos] = -v[5];
+		dest[448 + pos] = -v[4];
+		dest[464 + pos] = -v[3];
+		dest[480 + pos] = -v[2];
+		dest[496 + pos] = -v[1];
+		// insert V[32] (== -new_v[0]) into other v:
+		dest = (actual_v == v1) ? v2 : v1;
+		dest[0 + pos] = -v[0];
+		// insert V[33-48] (== new_v[16-31]) into other v:
+		dest[16 + pos] = v[16];
+		dest[32 + pos] = v[17];
+		dest[48 + pos] = v[18];
+		dest[64 + pos] = v[19];
+		dest[80 + pos] = v[20];
+		dest[96 + pos] = v[21];
+		dest[112 + pos] = v[22];
+		dest[128 + pos] = v[23];
+		dest[144 + pos] = v[24];
+		dest[160 + pos] = v[25];
+		dest[176 + pos] = v[26];
+		dest[192 + pos] = v[27];
+		dest[208 + pos] = v[28];
+		dest[224 + pos] = v[29];
+		dest[240 + pos] = v[30];
+		dest[256 + pos] = v[31];
+		// insert V[49-63] (== new_v[30-16]) into other v:
+		dest[272 + pos] = v[30];
+		dest[288 + pos] = v[29];
+		dest[304 + pos] = v[28];
+		dest[320 + pos] = v[27];
+		dest[336 + pos] = v[26];
+		dest[352 + pos] = v[25];
+		dest[368 + pos] = v[24];
+		dest[384 + pos] = v[23];
+		dest[400 + pos] = v[22];
+		dest[416 + pos] = v[21];
+		dest[432 + pos] = v[20];
+		dest[448 + pos] = v[19];
+		dest[464 + pos] = v[18];
+		dest[480 + pos] = v[17];
+		dest[496 + pos] = v[16];
+		// compute the samples with the kernel of the column written
+		if(actual_write_pos == 0) compute_pcm_samples0(out, scalefactor, step);
+		else if(actual_write_pos == 1) compute_pcm_samples1(out, scalefactor, step);
+		else if(actual_write_pos == 2) compute_pcm_samples2(out, scalefactor, step);
+		else if(actual_write_pos == 3) compute_pcm_samples3(out, scalefactor, step);
+		else if(actual_write_pos == 4) compute_pcm_samples4(out, scalefactor, step);
+		else if(actual_write_pos == 5) compute_pcm_samples5(out, scalefactor, step);
+		else if(actual_write_pos == 6) compute_pcm_samples6(out, scalefactor, step);
+		else if(actual_write_pos == 7) compute_pcm_samples7(out, scalefactor, step);
+		else if(actual_write_pos == 8) compute_pcm_samples8(out, scalefactor, step);
+		else if(actual_write_pos == 9) compute_pcm_samples9(out, scalefactor, step);
+		else if(actual_write_pos == 10) compute_pcm_samples10(out, scalefactor, step);
+		else if(actual_write_pos == 11) compute_pcm_samples11(out, scalefactor, step);
+		else if(actual_write_pos == 12) compute_pcm_samples12(out, scalefactor, step);
+		else if(actual_write_pos == 13) compute_pcm_samples13(out, scalefactor, step);
+		else if(actual_write_pos == 14) compute_pcm_samples14(out, scalefactor, step);
+		else if(actual_write_pos == 15) compute_pcm_samples15(out, scalefactor, step);
+		actual_write_pos = (actual_write_pos + 1) & 0xf;
+		actual_v = (actual_v == v1) ? v2 : v1;
+	}
+
+	private void compute_pcm_samples0(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[0 + dvp] * dp[0]) + (vp[15 + dvp] * dp[1]) + (vp[14 + dvp] * dp[2])
+					+ (vp[13 + dvp] * dp[3]) + (vp[12 + dvp] * dp[4]) + (vp[11 + dvp] * dp[5]) + (vp[10 + dvp] * dp[6])
+					+ (vp[9 + dvp] * dp[7]) + (vp[8 + dvp] * dp[8]) + (vp[7 + dvp] * dp[9]) + (vp[6 + dvp] * dp[10])
+					+ (vp[5 + dvp] * dp[11]) + (vp[4 + dvp] * dp[12]) + (vp[3 + dvp] * dp[13]) + (vp[2 + dvp] * dp[14])
+					+ (vp[1 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples1(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[1 + dvp] * dp[0]) + (vp[0 + dvp] * dp[1]) + (vp[15 + dvp] * dp[2])
+					+ (vp[14 + dvp] * dp[3]) + (vp[13 + dvp] * dp[4]) + (vp[12 + dvp] * dp[5]) + (vp[11 + dvp] * dp[6])
+					+ (vp[10 + dvp] * dp[7]) + (vp[9 + dvp] * dp[8]) + (vp[8 + dvp] * dp[9]) + (vp[7 + dvp] * dp[10])
+					+ (vp[6 + dvp] * dp[11]) + (vp[5 + dvp] * dp[12]) + (vp[4 + dvp] * dp[13]) + (vp[3 + dvp] * dp[14])
+					+ (vp[2 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples2(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[2 + dvp] * dp[0]) + (vp[1 + dvp] * dp[1]) + (vp[0 + dvp] * dp[2]) + (vp[15 + dvp] * dp[3])
+					+ (vp[14 + dvp] * dp[4]) + (vp[13 + dvp] * dp[5]) + (vp[12 + dvp] * dp[6]) + (vp[11 + dvp] * dp[7])
+					+ (vp[10 + dvp] * dp[8]) + (vp[9 + dvp] * dp[9]) + (vp[8 + dvp] * dp[10]) + (vp[7 + dvp] * dp[11])
+					+ (vp[6 + dvp] * dp[12]) + (vp[5 + dvp] * dp[13]) + (vp[4 + dvp] * dp[14]) + (vp[3 + dvp] * dp[15]))
+					* scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples3(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[3 + dvp] * dp[0]) + (vp[2 + dvp] * dp[1]) + (vp[1 + dvp] * dp[2]) + (vp[0 + dvp] * dp[3])
+					+ (vp[15 + dvp] * dp[4]) + (vp[14 + dvp] * dp[5]) + (vp[13 + dvp] * dp[6]) + (vp[12 + dvp] * dp[7])
+					+ (vp[11 + dvp] * dp[8]) + (vp[10 + dvp] * dp[9]) + (vp[9 + dvp] * dp[10]) + (vp[8 + dvp] * dp[11])
+					+ (vp[7 + dvp] * dp[12]) + (vp[6 + dvp] * dp[13]) + (vp[5 + dvp] * dp[14]) + (vp[4 + dvp] * dp[15]))
+					* scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples4(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[4 + dvp] * dp[0]) + (vp[3 + dvp] * dp[1]) + (vp[2 + dvp] * dp[2]) + (vp[1 + dvp] * dp[3])
+					+ (vp[0 + dvp] * dp[4]) + (vp[15 + dvp] * dp[5]) + (vp[14 + dvp] * dp[6]) + (vp[13 + dvp] * dp[7])
+					+ (vp[12 + dvp] * dp[8]) + (vp[11 + dvp] * dp[9]) + (vp[10 + dvp] * dp[10]) + (vp[9 + dvp] * dp[11])
+					+ (vp[8 + dvp] * dp[12]) + (vp[7 + dvp] * dp[13]) + (vp[6 + dvp] * dp[14]) + (vp[5 + dvp] * dp[15]))
+					* scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples5(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[5 + dvp] * dp[0]) + (vp[4 + dvp] * dp[1]) + (vp[3 + dvp] * dp[2]) + (vp[2 + dvp] * dp[3])
+					+ (vp[1 + dvp] * dp[4]) + (vp[0 + dvp] * dp[5]) + (vp[15 + dvp] * dp[6]) + (vp[14 + dvp] * dp[7])
+					+ (vp[13 + dvp] * dp[8]) + (vp[12 + dvp] * dp[9]) + (vp[11 + dvp] * dp[10])
+					+ (vp[10 + dvp] * dp[11]) + (vp[9 + dvp] * dp[12]) + (vp[8 + dvp] * dp[13]) + (vp[7 + dvp] * dp[14])
+					+ (vp[6 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples6(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[6 + dvp] * dp[0]) + (vp[5 + dvp] * dp[1]) + (vp[4 + dvp] * dp[2]) + (vp[3 + dvp] * dp[3])
+					+ (vp[2 + dvp] * dp[4]) + (vp[1 + dvp] * dp[5]) + (vp[0 + dvp] * dp[6]) + (vp[15 + dvp] * dp[7])
+					+ (vp[14 + dvp] * dp[8]) + (vp[13 + dvp] * dp[9]) + (vp[12 + dvp] * dp[10])
+					+ (vp[11 + dvp] * dp[11]) + (vp[10 + dvp] * dp[12]) + (vp[9 + dvp] * dp[13])
+					+ (vp[8 + dvp] * dp[14]) + (vp[7 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples7(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[7 + dvp] * dp[0]) + (vp[6 + dvp] * dp[1]) + (vp[5 + dvp] * dp[2]) + (vp[4 + dvp] * dp[3])
+					+ (vp[3 + dvp] * dp[4]) + (vp[2 + dvp] * dp[5]) + (vp[1 + dvp] * dp[6]) + (vp[0 + dvp] * dp[7])
+					+ (vp[15 + dvp] * dp[8]) + (vp[14 + dvp] * dp[9]) + (vp[13 + dvp] * dp[10])
+					+ (vp[12 + dvp] * dp[11]) + (vp[11 + dvp] * dp[12]) + (vp[10 + dvp] * dp[13])
+					+ (vp[9 + dvp] * dp[14]) + (vp[8 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples8(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[8 + dvp] * dp[0]) + (vp[7 + dvp] * dp[1]) + (vp[6 + dvp] * dp[2]) + (vp[5 + dvp] * dp[3])
+					+ (vp[4 + dvp] * dp[4]) + (vp[3 + dvp] * dp[5]) + (vp[2 + dvp] * dp[6]) + (vp[1 + dvp] * dp[7])
+					+ (vp[0 + dvp] * dp[8]) + (vp[15 + dvp] * dp[9]) + (vp[14 + dvp] * dp[10]) + (vp[13 + dvp] * dp[11])
+					+ (vp[12 + dvp] * dp[12]) + (vp[11 + dvp] * dp[13]) + (vp[10 + dvp] * dp[14])
+					+ (vp[9 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples9(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[9 + dvp] * dp[0]) + (vp[8 + dvp] * dp[1]) + (vp[7 + dvp] * dp[2]) + (vp[6 + dvp] * dp[3])
+					+ (vp[5 + dvp] * dp[4]) + (vp[4 + dvp] * dp[5]) + (vp[3 + dvp] * dp[6]) + (vp[2 + dvp] * dp[7])
+					+ (vp[1 + dvp] * dp[8]) + (vp[0 + dvp] * dp[9]) + (vp[15 + dvp] * dp[10]) + (vp[14 + dvp] * dp[11])
+					+ (vp[13 + dvp] * dp[12]) + (vp[12 + dvp] * dp[13]) + (vp[11 + dvp] * dp[14])
+					+ (vp[10 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples10(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[10 + dvp] * dp[0]) + (vp[9 + dvp] * dp[1]) + (vp[8 + dvp] * dp[2]) + (vp[7 + dvp] * dp[3])
+					+ (vp[6 + dvp] * dp[4]) + (vp[5 + dvp] * dp[5]) + (vp[4 + dvp] * dp[6]) + (vp[3 + dvp] * dp[7])
+					+ (vp[2 + dvp] * dp[8]) + (vp[1 + dvp] * dp[9]) + (vp[0 + dvp] * dp[10]) + (vp[15 + dvp] * dp[11])
+					+ (vp[14 + dvp] * dp[12]) + (vp[13 + dvp] * dp[13]) + (vp[12 + dvp] * dp[14])
+					+ (vp[11 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples11(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[11 + dvp] * dp[0]) + (vp[10 + dvp] * dp[1]) + (vp[9 + dvp] * dp[2])
+					+ (vp[8 + dvp] * dp[3]) + (vp[7 + dvp] * dp[4]) + (vp[6 + dvp] * dp[5]) + (vp[5 + dvp] * dp[6])
+					+ (vp[4 + dvp] * dp[7]) + (vp[3 + dvp] * dp[8]) + (vp[2 + dvp] * dp[9]) + (vp[1 + dvp] * dp[10])
+					+ (vp[0 + dvp] * dp[11]) + (vp[15 + dvp] * dp[12]) + (vp[14 + dvp] * dp[13])
+					+ (vp[13 + dvp] * dp[14]) + (vp[12 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples12(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[12 + dvp] * dp[0]) + (vp[11 + dvp] * dp[1]) + (vp[10 + dvp] * dp[2])
+					+ (vp[9 + dvp] * dp[3]) + (vp[8 + dvp] * dp[4]) + (vp[7 + dvp] * dp[5]) + (vp[6 + dvp] * dp[6])
+					+ (vp[5 + dvp] * dp[7]) + (vp[4 + dvp] * dp[8]) + (vp[3 + dvp] * dp[9]) + (vp[2 + dvp] * dp[10])
+					+ (vp[1 + dvp] * dp[11]) + (vp[0 + dvp] * dp[12]) + (vp[15 + dvp] * dp[13])
+					+ (vp[14 + dvp] * dp[14]) + (vp[13 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples13(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[13 + dvp] * dp[0]) + (vp[12 + dvp] * dp[1]) + (vp[11 + dvp] * dp[2])
+					+ (vp[10 + dvp] * dp[3]) + (vp[9 + dvp] * dp[4]) + (vp[8 + dvp] * dp[5]) + (vp[7 + dvp] * dp[6])
+					+ (vp[6 + dvp] * dp[7]) + (vp[5 + dvp] * dp[8]) + (vp[4 + dvp] * dp[9]) + (vp[3 + dvp] * dp[10])
+					+ (vp[2 + dvp] * dp[11]) + (vp[1 + dvp] * dp[12]) + (vp[0 + dvp] * dp[13]) + (vp[15 + dvp] * dp[14])
+					+ (vp[14 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples14(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float[] dp = d16[i];
+			tmpOut[i] = ((vp[14 + dvp] * dp[0]) + (vp[13 + dvp] * dp[1]) + (vp[12 + dvp] * dp[2])
+					+ (vp[11 + dvp] * dp[3]) + (vp[10 + dvp] * dp[4]) + (vp[9 + dvp] * dp[5]) + (vp[8 + dvp] * dp[6])
+					+ (vp[7 + dvp] * dp[7]) + (vp[6 + dvp] * dp[8]) + (vp[5 + dvp] * dp[9]) + (vp[4 + dvp] * dp[10])
+					+ (vp[3 + dvp] * dp[11]) + (vp[2 + dvp] * dp[12]) + (vp[1 + dvp] * dp[13]) + (vp[0 + dvp] * dp[14])
+					+ (vp[15 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	private void compute_pcm_samples15(float[] tmpOut, float scalefactor, int step){
+		final float[] vp = actual_v;
+		int dvp = 0;
+		// fat chance of having this loop unroll
+		for(int i = 0; i < 32; i += step){
+			final float dp[] = d16[i];
+			tmpOut[i] = ((vp[15 + dvp] * dp[0]) + (vp[14 + dvp] * dp[1]) + (vp[13 + dvp] * dp[2])
+					+ (vp[12 + dvp] * dp[3]) + (vp[11 + dvp] * dp[4]) + (vp[10 + dvp] * dp[5]) + (vp[9 + dvp] * dp[6])
+					+ (vp[8 + dvp] * dp[7]) + (vp[7 + dvp] * dp[8]) + (vp[6 + dvp] * dp[9]) + (vp[5 + dvp] * dp[10])
+					+ (vp[4 + dvp] * dp[11]) + (vp[3 + dvp] * dp[12]) + (vp[2 + dvp] * dp[13]) + (vp[1 + dvp] * dp[14])
+					+ (vp[0 + dvp] * dp[15])) * scalefactor;
+			dvp += step << 4;
+		}
+	}
+
+	/**
+	 * Converts a 1D array into a number of smaller arrays. This is used to achieve offset + constant
+	 * indexing into an array. Each sub-array represents a block of values of the original array.
+	 * @param array The array to split up into blocks.
+	 * @param blockSize The size of the blocks to split the array into. This must be an exact
+	 * divisor of the length of the array, or some data will be lost from the main array.
+	 * @return An array of arrays in which each element in the returned array will be of length <code>blockSize</code>.
+	 */
+	private static float[][] splitArray(final float[] array, final int blockSize){
+		int size = array.length / blockSize;
+		float[][] split = new float[size][];
+		for(int i = 0; i < size; i++) split[i] = subArray(array, i * blockSize, blockSize);
+		return split;
+	}
+
+	/**
+	 * Returns a subarray of an existing array.
+	 * @param array The array to retrieve a subarra from.
+	 * @param offs The offset in the array that corresponds to the first index of the subarray.
+	 * @param len The number of indeces in the subarray.
+	 * @return The subarray, which may be of length 0.
+	 */
+	private static float[] subArray(final float[] array, final int offs, int len){
+		if(offs + len > array.length) len = array.length - offs;
+		if(len < 0) len = 0;
+		float[] subarray = new float[len];
+		for(int i = 0; i < len; i++) subarray[i] = array[offs + i];
+		return subarray;
+	}
+}
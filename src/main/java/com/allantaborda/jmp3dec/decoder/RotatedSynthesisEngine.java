@@ -0,0 +1,63 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/**
+ * Synthesis windowing over a doubled, rotated buffer. The buffer keeps the 32 values of a row of V for each of the 16 newest vectors, with the
+ * rows of each vector stored twice, 16 positions apart, so the 16 vectors from the newest are contiguous from any position. Each sample is then the
+ * same sum over 16 taps, with the window stored tap by tap so the taps of consecutive samples are consecutive. The samples are the same as those of the reference
+ * engine, as the sums are made in the same order.
+ */
+class RotatedSynthesisEngine implements SynthesisEngine{
+	/** The window D by tap: coefficient j of sample i is at <code>j * 32 + i</code>. */
+	static final float[] dt = new float[512];
+	/** Vectors V[0] to V[31] and V[32] to V[63], swapped after each new vector: row r of position p is at <code>p * 32 + r</code> and 512 after. */
+	private float[] actual_v = new float[1024], other_v = new float[1024];
+	private int actual_write_pos; // 0-15
+
+	static{
+		for(int i = 0; i < 32; i++){
+			for(int j = 0; j < 16; j++) dt[(j << 5) + i] = SynthesisFilter.d_data[(i << 4) + j];
+		}
+	}
+
+	RotatedSynthesisEngine(){
+		reset();
+	}
+
+	@Override
+	public void reset(){
+		for(int p = 0; p < 1024; p++) actual_v[p] = other_v[p] = 0.0f;
+		actual_write_pos = 15;
+	}
+
+	@Override
+	public void compute_pcm_samples(float[] v, float scalefactor, int step, float[] out){
+		float[] a = actual_v, b = other_v;
+		int p0 = actual_write_pos << 5, p1 = p0 + 512, r;
+		for(r = 0; r < 16; r++) a[p0 + r] = a[p1 + r] = v[r];
+		a[p0 + 16] = a[p1 + 16] = 0.0f;
+		for(r = 17; r < 32; r++) a[p0 + r] = a[p1 + r] = -v[32 - r];
+		b[p0] = b[p1] = -v[0];
+		for(r = 1; r < 17; r++) b[p0 + r] = b[p1 + r] = v[r + 15];
+		for(r = 17; r < 32; r++) b[p0 + r] = b[p1 + r] = v[47 - r];
+		window(a, p1, scalefactor, step, out);
+		actual_write_pos = (actual_write_pos + 1) & 0xf;
+		actual_v = b;
+		other_v = a;
+	}
+
+	/** Computes the samples from the newest vector, stored at position t of the buffer a. */
+	void window(float[] a, int t, float scalefactor, int step, float[] out){
+		float[] d = dt;
+		// The loop over all the samples is kept apart, so it runs over consecutive values.
+		if(step == 1) for(int i = 0; i < 32; i++) out[i] = window(a, d, t + i, i) * scalefactor;
+		else for(int i = 0; i < 32; i += step) out[i] = window(a, d, t + i, i) * scalefactor;
+	}
+
+	/** Sums the 16 taps of sample i: tap j reads the vector j before the newest, 32 * j before position t. */
+	private static float window(float[] a, float[] d, int t, int i){
+		return (a[t] * d[i]) + (a[t - 32] * d[32 + i]) + (a[t - 64] * d[64 + i]) + (a[t - 96] * d[96 + i]) + (a[t - 128] * d[128 + i])
+			+ (a[t - 160] * d[160 + i]) + (a[t - 192] * d[192 + i]) + (a[t - 224] * d[224 + i]) + (a[t - 256] * d[256 + i])
+			+ (a[t - 288] * d[288 + i]) + (a[t - 320] * d[320 + i]) + (a[t - 352] * d[352 + i]) + (a[t - 384] * d[384 + i])
+			+ (a[t - 416] * d[416 + i]) + (a[t - 448] * d[448 + i]) + (a[t - 480] * d[480 + i]);
+	}
+}
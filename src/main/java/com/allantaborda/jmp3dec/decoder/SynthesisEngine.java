@@ -0,0 +1,41 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/**
+ * The windowing of the synthesis filter bank: it keeps the last 16 vectors V of 64 values computed from the subband samples, and computes the 32
+ * PCM samples of each new vector from them and the window D of 512 coefficients.
+ * <p>
+ * An engine keeps the state of one channel, so each synthesis filter needs its own.
+ */
+public interface SynthesisEngine{
+	/** Creates the engine of the reference implementation, which reads the vectors with 16 unrolled kernels, one for each position of the newest. */
+	static SynthesisEngine reference(){
+		return new ReferenceSynthesisEngine();
+	}
+
+	/** Creates an engine that keeps the vectors in a doubled, rotated buffer, so a single loop over the window computes all the samples. */
+	static SynthesisEngine rotated(){
+		return new RotatedSynthesisEngine();
+	}
+
+	/**
+	 * Creates an engine that computes the window with vector instructions, with the same samples as the reference engine. It needs the Java 17 or
+	 * later version of the multi-release JAR and the module <code>jdk.incubator.vector</code>; without them, it's the reference engine.
+	 */
+	static SynthesisEngine vector(){
+		return VectorKernels.ENABLED ? VectorKernels.synthesis_engine() : reference();
+	}
+
+	/** Clears the vectors, as at the start of a stream. */
+	void reset();
+
+	/**
+	 * Adds a new vector and computes the PCM samples.
+	 * @param v The 32 values of the new vector V computed by the cosine transform: values 0 to 15 are V[0] to V[15] and values 16 to 31 are V[33] to
+	 * V[48]. The others follow from them: V[16] is zero, V[17] to V[31] are -V[15] down to -V[1], V[32] is -V[0] and V[49] to V[63] are V[47] down
+	 * to V[33].
+	 * @param scalefactor The factor scaling the samples.
+	 * @param step 1 to compute all the samples; 2 or 4 to compute only every second or fourth one.
+	 * @param out The 32 samples, of which only those at multiples of the step are computed.
+	 */
+	void compute_pcm_samples(float[] v, float scalefactor, int step, float[] out);
+}
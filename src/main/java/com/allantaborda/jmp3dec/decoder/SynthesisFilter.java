@@ -31,8 +31,8 @@
 package com.allantaborda.jmp3dec.decoder;
 
 /**
- * A class for the synthesis filter bank. This class does a fast downsampling from 32, 44.1 or 48 kHz to 8 kHz,
- * if ULAW is defined. Frequencies above 4 kHz are removed by ignoring higher subbands.
+ * A class for the synthesis filter bank. It can output the samples at 1/2 or 1/4 of the sample rate: the subbands above the lower 16 or 8 are
+ * ignored, so the output has no frequencies above the new Nyquist frequency, and only every second or fourth sample of the window is computed.
  */
 final class SynthesisFilter{
 	static final float d_data[] = { 0.000000000f, -0.000442505f, 0.003250122f, -0.007003784f, 0.031082153f, -0.078628540f, 0.100311279f, -0.572036743f,
@@ -121,27 +121,28 @@ final class SynthesisFilter{
 	private static final float cos1_4 = (float) (1.0 / (2.0 * Math.cos(MY_PI / 4.0)));
 	// Note: These values are not in the same order as in Annex 3-B.3 of the ISO/IEC DIS 11172-3
 	// private float d[] ={0.000000000, -4.000442505};
-	private static float d[];
-	/** d[] split into subarrays of length 16. This provides for more faster access by allowing a block of 16 to be addressed with constant offset. */
-	private static float d16[][];
-	private float[] v1;
-	private float[] v2;
-	private float[] actual_v; // v1 or v2
-	private int actual_write_pos; // 0-15
+	/** The engine that keeps the vector V and windows it into the PCM samples. */
+	private final SynthesisEngine engine;
+	private float[] new_v = new float[32]; // 32 new values of V computed by the cosine transform
 	private float[] samples; // 32 new subband samples
 	private int channel;
 	private float scalefactor;
 	private float[] eq;
 	private float[] _tmpOut = new float[32];
+	/** The samples computed since the last flush, 32 for each call to calculate_pcm_samples, of which those at multiples of the step are output. */
+	private float[] block = new float[Obuffer.OBUFFERSIZE / 2];
+	private int block_length;
+	/** Distance between the samples computed: 1, 2 or 4. */
+	private int step = 1;
 
 	/** Contructor. The scalefactor scales the calculated float pcm samples to short values (raw pcm samples are in [-1.0, 1.0], if no violations occur). */
 	public SynthesisFilter(int channelnumber, float factor, float[] eq0){
-		if(d == null){
-			d = SynthesisFilter.d_data;
-			d16 = splitArray(d, 16);
-		}
-		v1 = new float[512];
-		v2 = new float[512];
+		this(channelnumber, factor, eq0, SynthesisEngine.reference());
+	}
+
+	/** Contructor with the engine that windows the vector V into the PCM samples. */
+	public SynthesisFilter(int channelnumber, float factor, float[] eq0, SynthesisEngine engine){
+		this.engine = engine;
 		samples = new float[32];
 		channel = channelnumber;
 		scalefactor = factor;
@@ -158,12 +159,25 @@ final class SynthesisFilter{
 		if(eq.length < 32) throw new IllegalArgumentException("eq0");
 	}
 
+	/**
+	 * Sets the downsampling of the output: 1 for the sample rate of the stream, 2 or 4 for half or a quarter of it. Each call to
+	 * calculate_pcm_samples then outputs 32, 16 or 8 samples.
+	 */
+	public void setDownsampling(int factor){
+		if(factor != 1 && factor != 2 && factor != 4) throw new IllegalArgumentException("factor");
+		step = factor;
+	}
+
+	/** Returns the number of lower subbands used for the output: 32, 16 or 8. */
+	int subband_limit(){
+		return 32 / step;
+	}
+
 	/** Reset the synthesis filter. */
 	public void reset(){
-		for(int p = 0; p < 512; p++) v1[p] = v2[p] = 0.0f;
+		engine.reset();
+		block_length = 0;
 		for(int p2 = 0; p2 < 32; p2++) samples[p2] = 0.0f;
-		actual_v = v1;
-		actual_write_pos = 15;
 	}
 
 	/** Inject Sample. */
@@ -171,11 +185,16 @@ final class SynthesisFilter{
 		samples[subbandnumber] = eq[subbandnumber] * sample;
 	}
 
+	/** Adds a sample to the one input in a subband, to mix the channels. */
+	public void add_sample(float sample, int subbandnumber){
+		samples[subbandnumber] += eq[subbandnumber] * sample;
+	}
+
 	public void input_samples(float[] s){
 		for(int i = 31; i >= 0; i--) samples[i] = s[i] * eq[i];
 	}
 
-	/** Compute new values via a fast cosine transform. */
+	/** Compute new values via a fast cosine transform, into new_v. */
 	private void compute_new_v(){
 		float new_v0, new_v1, new_v2, new_v3, new_v4, new_v5, new_v6, new_v7, new_v8, new_v9, new_v10, new_v11, new_v12, new_v13, new_v14, new_v15,
 			new_v16, new_v17, new_v18, new_v19, new_v20, new_v21, new_v22, new_v23, new_v24, new_v25, new_v26, new_v27, new_v28, new_v29, new_v30, new_v31;
@@ -398,393 +417,67 @@ final class SynthesisFilter{
 		new_v26/* 43-17 */ = tmp1 - p12 - (tmp2 = p4 + p6 + p7);
 		new_v30/* 47-17 */ = (tmp1 = -p8 - p12 - p14 - p15) - p0;
 		new_v28/* 45-17 */ = tmp1 - tmp2;
-		float dest[] = actual_v;
-		int pos = actual_write_pos;
-		dest[0 + pos] = new_v0;
-		dest[16 + pos] = new_v1;
-		dest[32 + pos] = new_v2;
-		dest[48 + pos] = new_v3;
-		dest[64 + pos] = new_v4;
-		dest[80 + pos] = new_v5;
-		dest[96 + pos] = new_v6;
-		dest[112 + pos] = new_v7;
-		dest[128 + pos] = new_v8;
-		dest[144 + pos] = new_v9;
-		dest[160 + pos] = new_v10;
-		dest[176 + pos] = new_v11;
-		dest[192 + pos] = new_v12;
-		dest[208 + pos] = new_v13;
-		dest[224 + pos] = new_v14;
-		dest[240 + pos] = new_v15;
-		// V[16] is always 0.0:
-		dest[256 + pos] = 0.0f;
-		// insert V[17-31] (== -new_v[15-1]) into actual v:
-		dest[272 + pos] = -new_v15;
-		dest[288 + pos] = -new_v14;
-		dest[304 + pos] = -new_v13;
-		dest[320 + pos] = -new_v12;
-		dest[336 + pos] = -new_v11;
-		dest[352 + pos] = -new_v10;
-		dest[368 + pos] = -new_v9;
-		dest[384 + pos] = -new_v8;
-		dest[400 + pos] = -new_v7;
-		dest[416 + pos] = -new_v6;
-		dest[432 + pos] = -new_v5;
-		dest[448 + pos] = -new_v4;
-		dest[464 + pos] = -new_v3;
-		dest[480 + pos] = -new_v2;
-		dest[496 + pos] = -new_v1;
-		// insert V[32] (== -new_v[0]) into other v:
-		dest = (actual_v == v1) ? v2 : v1;
-		dest[0 + pos] = -new_v0;
-		// insert V[33-48] (== new_v[16-31]) into other v:
-		dest[16 + pos] = new_v16;
-		dest[32 + pos] = new_v17;
-		dest[48 + pos] = new_v18;
-		dest[64 + pos] = new_v19;
-		dest[80 + pos] = new_v20;
-		dest[96 + pos] = new_v21;
-		dest[112 + pos] = new_v22;
-		dest[128 + pos] = new_v23;
-		dest[144 + pos] = new_v24;
-		dest[160 + pos] = new_v25;
-		dest[176 + pos] = new_v26;
-		dest[192 + pos] = new_v27;
-		dest[208 + pos] = new_v28;
-		dest[224 + pos] = new_v29;
-		dest[240 + pos] = new_v30;
-		dest[256 + pos] = new_v31;
-		// insert V[49-63] (== new_v[30-16]) into other v:
-		dest[272 + pos] = new_v30;
-		dest[288 + pos] = new_v29;
-		dest[304 + pos] = new_v28;
-		dest[320 + pos] = new_v27;
-		dest[336 + pos] = new_v26;
-		dest[352 + pos] = new_v25;
-		dest[368 + pos] = new_v24;
-		dest[384 + pos] = new_v23;
-		dest[400 + pos] = new_v22;
-		dest[416 + pos] = new_v21;
-		dest[432 + pos] = new_v20;
-		dest[448 + pos] = new_v19;
-		dest[464 + pos] = new_v18;
-		dest[480 + pos] = new_v17;
-		dest[496 + pos] = new_v16;
-	}
-
-	private void compute_pcm_samples0(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[0 + dvp] * dp[0]) + (vp[15 + dvp] * dp[1]) + (vp[14 + dvp] * dp[2])
-					+ (vp[13 + dvp] * dp[3]) + (vp[12 + dvp] * dp[4]) + (vp[11 + dvp] * dp[5]) + (vp[10 + dvp] * dp[6])
-					+ (vp[9 + dvp] * dp[7]) + (vp[8 + dvp] * dp[8]) + (vp[7 + dvp] * dp[9]) + (vp[6 + dvp] * dp[10])
-					+ (vp[5 + dvp] * dp[11]) + (vp[4 + dvp] * dp[12]) + (vp[3 + dvp] * dp[13]) + (vp[2 + dvp] * dp[14])
-					+ (vp[1 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples1(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for (int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[1 + dvp] * dp[0]) + (vp[0 + dvp] * dp[1]) + (vp[15 + dvp] * dp[2])
-					+ (vp[14 + dvp] * dp[3]) + (vp[13 + dvp] * dp[4]) + (vp[12 + dvp] * dp[5]) + (vp[11 + dvp] * dp[6])
-					+ (vp[10 + dvp] * dp[7]) + (vp[9 + dvp] * dp[8]) + (vp[8 + dvp] * dp[9]) + (vp[7 + dvp] * dp[10])
-					+ (vp[6 + dvp] * dp[11]) + (vp[5 + dvp] * dp[12]) + (vp[4 + dvp] * dp[13]) + (vp[3 + dvp] * dp[14])
-					+ (vp[2 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples2(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[2 + dvp] * dp[0]) + (vp[1 + dvp] * dp[1]) + (vp[0 + dvp] * dp[2]) + (vp[15 + dvp] * dp[3])
-					+ (vp[14 + dvp] * dp[4]) + (vp[13 + dvp] * dp[5]) + (vp[12 + dvp] * dp[6]) + (vp[11 + dvp] * dp[7])
-					+ (vp[10 + dvp] * dp[8]) + (vp[9 + dvp] * dp[9]) + (vp[8 + dvp] * dp[10]) + (vp[7 + dvp] * dp[11])
-					+ (vp[6 + dvp] * dp[12]) + (vp[5 + dvp] * dp[13]) + (vp[4 + dvp] * dp[14]) + (vp[3 + dvp] * dp[15]))
-					* scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples3(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[3 + dvp] * dp[0]) + (vp[2 + dvp] * dp[1]) + (vp[1 + dvp] * dp[2]) + (vp[0 + dvp] * dp[3])
-					+ (vp[15 + dvp] * dp[4]) + (vp[14 + dvp] * dp[5]) + (vp[13 + dvp] * dp[6]) + (vp[12 + dvp] * dp[7])
-					+ (vp[11 + dvp] * dp[8]) + (vp[10 + dvp] * dp[9]) + (vp[9 + dvp] * dp[10]) + (vp[8 + dvp] * dp[11])
-					+ (vp[7 + dvp] * dp[12]) + (vp[6 + dvp] * dp[13]) + (vp[5 + dvp] * dp[14]) + (vp[4 + dvp] * dp[15]))
-					* scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples4(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for (int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[4 + dvp] * dp[0]) + (vp[3 + dvp] * dp[1]) + (vp[2 + dvp] * dp[2]) + (vp[1 + dvp] * dp[3])
-					+ (vp[0 + dvp] * dp[4]) + (vp[15 + dvp] * dp[5]) + (vp[14 + dvp] * dp[6]) + (vp[13 + dvp] * dp[7])
-					+ (vp[12 + dvp] * dp[8]) + (vp[11 + dvp] * dp[9]) + (vp[10 + dvp] * dp[10]) + (vp[9 + dvp] * dp[11])
-					+ (vp[8 + dvp] * dp[12]) + (vp[7 + dvp] * dp[13]) + (vp[6 + dvp] * dp[14]) + (vp[5 + dvp] * dp[15]))
-					* scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples5(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[5 + dvp] * dp[0]) + (vp[4 + dvp] * dp[1]) + (vp[3 + dvp] * dp[2]) + (vp[2 + dvp] * dp[3])
-					+ (vp[1 + dvp] * dp[4]) + (vp[0 + dvp] * dp[5]) + (vp[15 + dvp] * dp[6]) + (vp[14 + dvp] * dp[7])
-					+ (vp[13 + dvp] * dp[8]) + (vp[12 + dvp] * dp[9]) + (vp[11 + dvp] * dp[10])
-					+ (vp[10 + dvp] * dp[11]) + (vp[9 + dvp] * dp[12]) + (vp[8 + dvp] * dp[13]) + (vp[7 + dvp] * dp[14])
-					+ (vp[6 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples6(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[6 + dvp] * dp[0]) + (vp[5 + dvp] * dp[1]) + (vp[4 + dvp] * dp[2]) + (vp[3 + dvp] * dp[3])
-					+ (vp[2 + dvp] * dp[4]) + (vp[1 + dvp] * dp[5]) + (vp[0 + dvp] * dp[6]) + (vp[15 + dvp] * dp[7])
-					+ (vp[14 + dvp] * dp[8]) + (vp[13 + dvp] * dp[9]) + (vp[12 + dvp] * dp[10])
-					+ (vp[11 + dvp] * dp[11]) + (vp[10 + dvp] * dp[12]) + (vp[9 + dvp] * dp[13])
-					+ (vp[8 + dvp] * dp[14]) + (vp[7 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples7(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[7 + dvp] * dp[0]) + (vp[6 + dvp] * dp[1]) + (vp[5 + dvp] * dp[2]) + (vp[4 + dvp] * dp[3])
-					+ (vp[3 + dvp] * dp[4]) + (vp[2 + dvp] * dp[5]) + (vp[1 + dvp] * dp[6]) + (vp[0 + dvp] * dp[7])
-					+ (vp[15 + dvp] * dp[8]) + (vp[14 + dvp] * dp[9]) + (vp[13 + dvp] * dp[10])
-					+ (vp[12 + dvp] * dp[11]) + (vp[11 + dvp] * dp[12]) + (vp[10 + dvp] * dp[13])
-					+ (vp[9 + dvp] * dp[14]) + (vp[8 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples8(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[8 + dvp] * dp[0]) + (vp[7 + dvp] * dp[1]) + (vp[6 + dvp] * dp[2]) + (vp[5 + dvp] * dp[3])
-					+ (vp[4 + dvp] * dp[4]) + (vp[3 + dvp] * dp[5]) + (vp[2 + dvp] * dp[6]) + (vp[1 + dvp] * dp[7])
-					+ (vp[0 + dvp] * dp[8]) + (vp[15 + dvp] * dp[9]) + (vp[14 + dvp] * dp[10]) + (vp[13 + dvp] * dp[11])
-					+ (vp[12 + dvp] * dp[12]) + (vp[11 + dvp] * dp[13]) + (vp[10 + dvp] * dp[14])
-					+ (vp[9 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples9(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[9 + dvp] * dp[0]) + (vp[8 + dvp] * dp[1]) + (vp[7 + dvp] * dp[2]) + (vp[6 + dvp] * dp[3])
-					+ (vp[5 + dvp] * dp[4]) + (vp[4 + dvp] * dp[5]) + (vp[3 + dvp] * dp[6]) + (vp[2 + dvp] * dp[7])
-					+ (vp[1 + dvp] * dp[8]) + (vp[0 + dvp] * dp[9]) + (vp[15 + dvp] * dp[10]) + (vp[14 + dvp] * dp[11])
-					+ (vp[13 + dvp] * dp[12]) + (vp[12 + dvp] * dp[13]) + (vp[11 + dvp] * dp[14])
-					+ (vp[10 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples10(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[10 + dvp] * dp[0]) + (vp[9 + dvp] * dp[1]) + (vp[8 + dvp] * dp[2]) + (vp[7 + dvp] * dp[3])
-					+ (vp[6 + dvp] * dp[4]) + (vp[5 + dvp] * dp[5]) + (vp[4 + dvp] * dp[6]) + (vp[3 + dvp] * dp[7])
-					+ (vp[2 + dvp] * dp[8]) + (vp[1 + dvp] * dp[9]) + (vp[0 + dvp] * dp[10]) + (vp[15 + dvp] * dp[11])
-					+ (vp[14 + dvp] * dp[12]) + (vp[13 + dvp] * dp[13]) + (vp[12 + dvp] * dp[14])
-					+ (vp[11 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples11(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[11 + dvp] * dp[0]) + (vp[10 + dvp] * dp[1]) + (vp[9 + dvp] * dp[2])
-					+ (vp[8 + dvp] * dp[3]) + (vp[7 + dvp] * dp[4]) + (vp[6 + dvp] * dp[5]) + (vp[5 + dvp] * dp[6])
-					+ (vp[4 + dvp] * dp[7]) + (vp[3 + dvp] * dp[8]) + (vp[2 + dvp] * dp[9]) + (vp[1 + dvp] * dp[10])
-					+ (vp[0 + dvp] * dp[11]) + (vp[15 + dvp] * dp[12]) + (vp[14 + dvp] * dp[13])
-					+ (vp[13 + dvp] * dp[14]) + (vp[12 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples12(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[12 + dvp] * dp[0]) + (vp[11 + dvp] * dp[1]) + (vp[10 + dvp] * dp[2])
-					+ (vp[9 + dvp] * dp[3]) + (vp[8 + dvp] * dp[4]) + (vp[7 + dvp] * dp[5]) + (vp[6 + dvp] * dp[6])
-					+ (vp[5 + dvp] * dp[7]) + (vp[4 + dvp] * dp[8]) + (vp[3 + dvp] * dp[9]) + (vp[2 + dvp] * dp[10])
-					+ (vp[1 + dvp] * dp[11]) + (vp[0 + dvp] * dp[12]) + (vp[15 + dvp] * dp[13])
-					+ (vp[14 + dvp] * dp[14]) + (vp[13 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples13(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[13 + dvp] * dp[0]) + (vp[12 + dvp] * dp[1]) + (vp[11 + dvp] * dp[2])
-					+ (vp[10 + dvp] * dp[3]) + (vp[9 + dvp] * dp[4]) + (vp[8 + dvp] * dp[5]) + (vp[7 + dvp] * dp[6])
-					+ (vp[6 + dvp] * dp[7]) + (vp[5 + dvp] * dp[8]) + (vp[4 + dvp] * dp[9]) + (vp[3 + dvp] * dp[10])
-					+ (vp[2 + dvp] * dp[11]) + (vp[1 + dvp] * dp[12]) + (vp[0 + dvp] * dp[13]) + (vp[15 + dvp] * dp[14])
-					+ (vp[14 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples14(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for(int i = 0; i < 32; i++){
-			final float[] dp = d16[i];
-			tmpOut[i] = ((vp[14 + dvp] * dp[0]) + (vp[13 + dvp] * dp[1]) + (vp[12 + dvp] * dp[2])
-					+ (vp[11 + dvp] * dp[3]) + (vp[10 + dvp] * dp[4]) + (vp[9 + dvp] * dp[5]) + (vp[8 + dvp] * dp[6])
-					+ (vp[7 + dvp] * dp[7]) + (vp[6 + dvp] * dp[8]) + (vp[5 + dvp] * dp[9]) + (vp[4 + dvp] * dp[10])
-					+ (vp[3 + dvp] * dp[11]) + (vp[2 + dvp] * dp[12]) + (vp[1 + dvp] * dp[13]) + (vp[0 + dvp] * dp[14])
-					+ (vp[15 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
+		float[] v = new_v;
+		v[0] = new_v0;
+		v[1] = new_v1;
+		v[2] = new_v2;
+		v[3] = new_v3;
+		v[4] = new_v4;
+		v[5] = new_v5;
+		v[6] = new_v6;
+		v[7] = new_v7;
+		v[8] = new_v8;
+		v[9] = new_v9;
+		v[10] = new_v10;
+		v[11] = new_v11;
+		v[12] = new_v12;
+		v[13] = new_v13;
+		v[14] = new_v14;
+		v[15] = new_v15;
+		v[16] = new_v16;
+		v[17] = new_v17;
+		v[18] = new_v18;
+		v[19] = new_v19;
+		v[20] = new_v20;
+		v[21] = new_v21;
+		v[22] = new_v22;
+		v[23] = new_v23;
+		v[24] = new_v24;
+		v[25] = new_v25;
+		v[26] = new_v26;
+		v[27] = new_v27;
+		v[28] = new_v28;
+		v[29] = new_v29;
+		v[30] = new_v30;
+		v[31] = new_v31;
 	}
 
-	private void compute_pcm_samples15(Obuffer buffer){
-		final float[] vp = actual_v;
-		final float[] tmpOut = _tmpOut;
-		int dvp = 0;
-		// fat chance of having this loop unroll
-		for (int i = 0; i < 32; i++){
-			final float dp[] = d16[i];
-			tmpOut[i] = ((vp[15 + dvp] * dp[0]) + (vp[14 + dvp] * dp[1]) + (vp[13 + dvp] * dp[2])
-					+ (vp[12 + dvp] * dp[3]) + (vp[11 + dvp] * dp[4]) + (vp[10 + dvp] * dp[5]) + (vp[9 + dvp] * dp[6])
-					+ (vp[8 + dvp] * dp[7]) + (vp[7 + dvp] * dp[8]) + (vp[6 + dvp] * dp[9]) + (vp[5 + dvp] * dp[10])
-					+ (vp[4 + dvp] * dp[11]) + (vp[3 + dvp] * dp[12]) + (vp[2 + dvp] * dp[13]) + (vp[1 + dvp] * dp[14])
-					+ (vp[0 + dvp] * dp[15])) * scalefactor;
-			dvp += 16;
-		}
-	}
-
-	private void compute_pcm_samples(Obuffer buffer){
-		if(actual_write_pos == 0) compute_pcm_samples0(buffer);
-		else if(actual_write_pos == 1) compute_pcm_samples1(buffer);
-		else if(actual_write_pos == 2) compute_pcm_samples2(buffer);
-		else if(actual_write_pos == 3) compute_pcm_samples3(buffer);
-		else if(actual_write_pos == 4) compute_pcm_samples4(buffer);
-		else if(actual_write_pos == 5) compute_pcm_samples5(buffer);
-		else if(actual_write_pos == 6) compute_pcm_samples6(buffer);
-		else if(actual_write_pos == 7) compute_pcm_samples7(buffer);
-		else if(actual_write_pos == 8) compute_pcm_samples8(buffer);
-		else if(actual_write_pos == 9) compute_pcm_samples9(buffer);
-		else if(actual_write_pos == 10) compute_pcm_samples10(buffer);
-		else if(actual_write_pos == 11) compute_pcm_samples11(buffer);
-		else if(actual_write_pos == 12) compute_pcm_samples12(buffer);
-		else if(actual_write_pos == 13) compute_pcm_samples13(buffer);
-		else if(actual_write_pos == 14) compute_pcm_samples14(buffer);
-		else if(actual_write_pos == 15) compute_pcm_samples15(buffer);
-		if(buffer != null) buffer.appendSamples(channel, _tmpOut);
-	}
-
-	/** Calculate 32 PCM samples and put the into the Obuffer-object. */
+	/**
+	 * Calculate 32 PCM samples and keep them for the Obuffer-object, which receives them at the next flush. The caller must call flush after the
+	 * samples of a frame, or they aren't output; the samples of more than a frame are flushed here when the block is full.
+	 */
 	public void calculate_pcm_samples(Obuffer buffer){
+		for(int p = 32 / step; p < 32; p++) samples[p] = 0.0f;
 		compute_new_v();
-		compute_pcm_samples(buffer);
-		actual_write_pos = (actual_write_pos + 1) & 0xf;
-		actual_v = (actual_v == v1) ? v2 : v1;
+		engine.compute_pcm_samples(new_v, scalefactor, step, _tmpOut);
+		if(buffer != null){
+			if(block_length == block.length) flush(buffer);
+			System.arraycopy(_tmpOut, 0, block, block_length, 32);
+			block_length += 32;
+		}
 		// MDM: this may not be necessary. The Layer III decoder always outputs 32 subband samples, but I haven't checked layer I & II.
 		for(int p = 0; p < 32; p++) samples[p] = 0.0f;
 	}
 
-	/**
-	 * Converts a 1D array into a number of smaller arrays. This is used to achieve offset + constant
-	 * indexing into an array. Each sub-array represents a block of values of the original array.
-	 * @param array The array to split up into blocks.
-	 * @param blockSize The size of the blocks to split the array into. This must be an exact
-	 * divisor of the length of the array, or some data will be lost from the main array.
-	 * @return An array of arrays in which each element in the returned array will be of length <code>blockSize</code>.
-	 */
-	private static float[][] splitArray(final float[] array, final int blockSize){
-		int size = array.length / blockSize;
-		float[][] split = new float[size][];
-		for(int i = 0; i < size; i++) split[i] = subArray(array, i * blockSize, blockSize);
-		return split;
+	/** Puts the samples calculated since the last flush into the Obuffer-object, with a single call. */
+	public void flush(Obuffer buffer){
+		if(block_length == 0) return;
+		buffer.appendBlock(channel, block, 0, block_length / step, step);
+		block_length = 0;
 	}
 
-	/**
-	 * Returns a subarray of an existing array.
-	 * @param array The array to retrieve a subarra from.
-	 * @param offs The offset in the array that corresponds to the first index of the subarray.
-	 * @param len The number of indeces in the subarray.
-	 * @return The subarray, which may be of length 0.
-	 */
-	private static float[] subArray(final float[] array, final int offs, int len){
-		if(offs + len > array.length) len = array.length - offs;
-		if(len < 0) len = 0;
-		float[] subarray = new float[len];
-		for(int i = 0; i < len; i++) subarray[i] = array[offs + i];
-		return subarray;
+	/** Drops the samples calculated since the last flush, such as those of a frame that failed part-way. */
+	public void discard(){
+		block_length = 0;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/**
+ * Kernels of the decoder computed with the vector API. This version of the class, for Java 8, has none: they're in the version for Java 17 and
+ * later of the multi-release JAR, which can use them when the module <code>jdk.incubator.vector</code> is available. The callers check
+ * <code>ENABLED</code> before calling them; here the kernels run the scalar loops of the decoder.
+ */
+final class VectorKernels{
+	/** True if the kernels can be used. It's not a constant, so callers compiled with this version of the class still check it at run time. */
+	static final boolean ENABLED = enabled();
+
+	private VectorKernels(){}
+
+	private static boolean enabled(){
+		return false;
+	}
+
+	/** Creates the synthesis engine whose window is computed with vectors. */
+	static SynthesisEngine synthesis_engine(){
+		return SynthesisEngine.reference();
+	}
+
+	/** Applies the 8 alias-reduction butterflies between each pair of subbands up to line <code>sb18lim</code>. */
+	static void antialias(float[] x, int sb18lim){
+		LayerIIIDecoder.antialias(x, sb18lim);
+	}
+
+	/** Requantizes the lines from <code>from</code> to <code>to</code> of a band: line j is sign(is[j]) * |is[j]|^(4/3) * gain. */
+	static void dequantize_lines(float[] xr, int[] is, int from, int to, float gain){
+		LayerIIIDecoder.dequantize_lines(xr, is, from, to, gain);
+	}
+}
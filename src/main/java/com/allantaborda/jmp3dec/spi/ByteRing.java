@@ -0,0 +1,88 @@
+package com.allantaborda.jmp3dec.spi;
+
+/**
+ * Ring buffer of the decoded bytes of a stream, for a single producer and a single consumer. The producer, the thread decoding the frames, is the
+ * only one calling <code>write</code>; the consumer, the thread reading the stream, is the only one calling <code>read</code> and
+ * <code>clear</code>. They may be the same thread. Either may call <code>close</code>, the consumer to stop the producer. Each cursor is a volatile count written by its own side only, so neither
+ * side locks: the producer publishes the bytes it copied by moving its cursor, and the consumer frees the space it read by moving its own. Neither
+ * side waits either: a write takes only the bytes that fit and a read returns only the bytes available.
+ * <p>
+ * The capacity is a power of two, so a cursor is turned into an index of the array by a mask.
+ */
+final class ByteRing{
+	private final byte[] data;
+	private final int mask;
+	/** Bytes written by the producer and bytes read (or cleared) by the consumer, since the ring was created. */
+	private volatile long written, read;
+	/** False once the producer has written the last bytes. */
+	private volatile boolean open = true;
+
+	/**
+	 * Creates a ring.
+	 * @param capacity The minimum capacity in bytes, rounded up to a power of two.
+	 */
+	ByteRing(int capacity){
+		int size = size(capacity);
+		data = new byte[size];
+		mask = size - 1;
+	}
+
+	/** Returns the capacity of a ring of a minimum capacity, rounded up to a power of two. */
+	static int size(int capacity){
+		if(capacity <= 0 || capacity > 1 << 30) throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		int size = Integer.highestOneBit(capacity);
+		return size < capacity ? size << 1 : size;
+	}
+
+	int capacity(){
+		return data.length;
+	}
+
+	/** Returns the number of bytes that can be read. */
+	int available(){
+		return (int) (written - read);
+	}
+
+	/** Returns true until the producer closes the ring. The bytes written before can still be read. */
+	boolean isOpen(){
+		return open;
+	}
+
+	/** Marks the end of the bytes written. */
+	void close(){
+		open = false;
+	}
+
+	/**
+	 * Producer: copies bytes to the ring.
+	 * @return The number of bytes copied, fewer than <code>len</code> if the ring is full.
+	 */
+	int write(byte[] b, int off, int len){
+		long w = written;
+		len = Math.min(len, data.length - (int) (w - read));
+		int p = (int) w & mask, n = Math.min(len, data.length - p);
+		System.arraycopy(b, off, data, p, n);
+		System.arraycopy(b, off + n, data, 0, len - n);
+		written = w + len;
+		return len;
+	}
+
+	/**
+	 * Consumer: copies bytes from the ring.
+	 * @return The number of bytes copied, fewer than <code>len</code> if fewer are available.
+	 */
+	int read(byte[] b, int off, int len){
+		long r = read;
+		len = Math.min(len, (int) (written - r));
+		int p = (int) r & mask, n = Math.min(len, data.length - p);
+		System.arraycopy(data, p, b, off, n);
+		System.arraycopy(data, 0, b, off + n, len - n);
+		read = r + len;
+		return len;
+	}
+
+	/** Consumer: discards the bytes not read yet. */
+	void clear(){
+		read = written;
+	}
+}
@@ -0,0 +1,49 @@
+package com.allantaborda.jmp3dec.spi;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.sound.sampled.AudioFileFormat;
+
+/** Cache of the formats of files, by path, which drops the least recently used. A format is valid while the file keeps its size and modification time. */
+final class FormatCache{
+	private final LinkedHashMap<Path, CachedFormat> entries;
+
+	/**
+	 * Creates a cache.
+	 * @param capacity The maximum number of formats kept.
+	 */
+	FormatCache(int capacity){
+		entries = new LinkedHashMap<Path, CachedFormat>(16, 0.75F, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, CachedFormat> eldest){
+				return size() > capacity;
+			}
+		};
+	}
+
+	/** Returns the format of a file, or null if it's not kept or the file changed. */
+	synchronized AudioFileFormat get(Path path, BasicFileAttributes attrs){
+		CachedFormat e = entries.get(path.toAbsolutePath());
+		return e != null && e.size == attrs.size() && e.modified == attrs.lastModifiedTime().toMillis() ? e.format : null;
+	}
+
+	/** Keeps the format of a file, with the attributes read before the format. */
+	synchronized void put(Path path, BasicFileAttributes attrs, AudioFileFormat format){
+		entries.put(path.toAbsolutePath(), new CachedFormat(attrs.size(), attrs.lastModifiedTime().toMillis(), format));
+	}
+
+	private static final class CachedFormat{
+		final long size, modified;
+		final AudioFileFormat format;
+
+		CachedFormat(long size, long modified, AudioFileFormat format){
+			this.size = size;
+			this.modified = modified;
+			this.format = format;
+		}
+	}
+}
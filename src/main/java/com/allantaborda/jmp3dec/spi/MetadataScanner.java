@@ -0,0 +1,265 @@
+package com.allantaborda.jmp3dec.spi;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Scanner of the MP3 files of a directory tree, which reads their formats and tags concurrently with <code>MpegAudioFileReader</code>. Only the
+ * head, the first frames and the ID3v1 tag of each file are read, and no decoder is created.
+ * <p>
+ * The files are read by a pool of a bounded number of threads, and at most two files per thread are waiting for a thread, so the memory used
+ * doesn't depend on the number of files. The files that aren't MPEG audio or can't be read are skipped.
+ */
+public final class MetadataScanner{
+	/** The tag fields read from the ID3v1 and ID3v2 tags, under the names of the properties of <code>MpegAudioFileReader</code>. */
+	private static final String[] TAGS = {"title", "author", "album", "date", "copyright", "comment", "mp3.id3tag.genre", "mp3.id3tag.track",
+			"mp3.id3tag.disc", "mp3.id3tag.composer", "mp3.id3tag.grouping", "mp3.id3tag.encoded", "mp3.id3tag.publisher", "mp3.id3tag.orchestra",
+			"mp3.id3tag.length"};
+	/** Marks the end of the records of a stream. */
+	private static final Object END = new Object();
+	private final int parallelism;
+	private final Predicate<Path> filter;
+	private final MpegAudioFileReader reader = new MpegAudioFileReader();
+
+	/** Creates a scanner of the files ending with ".mp3" that uses a thread per processor. */
+	public MetadataScanner(){
+		this(Runtime.getRuntime().availableProcessors(), p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".mp3"));
+	}
+
+	/**
+	 * Creates a scanner.
+	 * @param parallelism The number of threads reading the files.
+	 * @param filter The filter of the regular files read.
+	 */
+	public MetadataScanner(int parallelism, Predicate<Path> filter){
+		if(parallelism <= 0) throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+		this.parallelism = parallelism;
+		this.filter = filter;
+	}
+
+	/**
+	 * Scans a directory tree, returning when all its files were read. The directories that can't be read are skipped.
+	 * @param root The directory to scan.
+	 * @param action The action given the record of each file, called by the threads of the scanner, so concurrently.
+	 * @throws IOException If the scan is interrupted.
+	 */
+	public void scan(Path root, Consumer<? super TrackInfo> action) throws IOException{
+		scan(root, action, new AtomicBoolean());
+	}
+
+	/**
+	 * Scans a directory tree in the background, returning a stream of the records of its files in the order they are read. At most a few records
+	 * per thread are kept until the stream takes them. Closing the stream stops the scan.
+	 * @param root The directory to scan.
+	 * @return The stream of the records, which should be closed.
+	 */
+	public Stream<TrackInfo> stream(Path root){
+		BlockingQueue<Object> queue = new ArrayBlockingQueue<>(4 * parallelism);
+		AtomicBoolean cancelled = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread walker = new Thread(() -> {
+			try{
+				scan(root, t -> offer(queue, t, cancelled), cancelled);
+			}catch(IOException | RuntimeException | Error e){
+				failure.set(e);
+			}finally{
+				offer(queue, END, cancelled);
+			}
+		}, "jmp3dec scanner");
+		walker.setDaemon(true);
+		walker.start();
+		Spliterator<TrackInfo> records = new Spliterators.AbstractSpliterator<TrackInfo>(Long.MAX_VALUE, Spliterator.NONNULL){
+			private boolean ended;
+
+			@Override
+			public boolean tryAdvance(Consumer<? super TrackInfo> action){
+				if(ended) return false;
+				Object o;
+				try{
+					o = queue.take();
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+					throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for the scanner"));
+				}
+				if(o == END){
+					ended = true;
+					Throwable t = failure.get();
+					if(t instanceof IOException) throw new UncheckedIOException((IOException) t);
+					if(t instanceof RuntimeException) throw (RuntimeException) t;
+					if(t instanceof Error) throw (Error) t;
+					return false;
+				}
+				action.accept((TrackInfo) o);
+				return true;
+			}
+		};
+		return StreamSupport.stream(records, false).onClose(() -> {
+			cancelled.set(true);
+			queue.clear();
+		});
+	}
+
+	/** Puts an object in the queue of a stream, waiting for room unless the stream is closed. */
+	private static void offer(BlockingQueue<Object> queue, Object o, AtomicBoolean cancelled){
+		try{
+			while(!cancelled.get() && !queue.offer(o, 100, TimeUnit.MILLISECONDS));
+		}catch(InterruptedException e){
+			cancelled.set(true);
+		}
+	}
+
+	private void scan(Path root, Consumer<? super TrackInfo> action, AtomicBoolean cancelled) throws IOException{
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread t = new Thread(r, "jmp3dec scanner");
+			t.setDaemon(true);
+			return t;
+		});
+		Semaphore slots = new Semaphore(3 * parallelism);
+		AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		try{
+			Files.walkFileTree(root, new SimpleFileVisitor<Path>(){
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException{
+					if(cancelled.get() || failure.get() != null) return FileVisitResult.TERMINATE;
+					if(!attrs.isRegularFile() || !filter.test(file)) return FileVisitResult.CONTINUE;
+					try{
+						slots.acquire();
+					}catch(InterruptedException e){
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("Interrupted while scanning " + root);
+					}
+					pool.execute(() -> {
+						try{
+							TrackInfo t = read(file);
+							if(t != null && !cancelled.get()) action.accept(t);
+						}catch(RuntimeException e){
+							failure.compareAndSet(null, e);
+						}finally{
+							slots.release();
+						}
+					});
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc){
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}finally{
+			pool.shutdown();
+			try{
+				while(!pool.awaitTermination(1, TimeUnit.SECONDS));
+			}catch(InterruptedException e){
+				pool.shutdownNow();
+				Thread.currentThread().interrupt();
+			}
+		}
+		RuntimeException e = failure.get();
+		if(e != null) throw e;
+	}
+
+	/** Returns the record of a file, or null if it's not MPEG audio or can't be read. */
+	private TrackInfo read(Path file){
+		try{
+			return new TrackInfo(file, reader.getAudioFileFormat(file));
+		}catch(UnsupportedAudioFileException | IOException e){
+			return null;
+		}
+	}
+
+	/** Format and tag fields of an MPEG audio file. */
+	public static final class TrackInfo{
+		private final Path path;
+		private final long duration;
+		private final int bitrate, sampleRate, channels;
+		private final boolean vbr;
+		private final Map<String, String> tags;
+
+		TrackInfo(Path path, AudioFileFormat format){
+			Map<String, Object> props = format.properties();
+			this.path = path;
+			duration = props.containsKey("duration") ? (Long) props.get("duration") : -1;
+			bitrate = (Integer) props.getOrDefault("mp3.bitrate.nominal.bps", -1);
+			sampleRate = (Integer) props.getOrDefault("mp3.frequency.hz", -1);
+			channels = (Integer) props.getOrDefault("mp3.channels", -1);
+			vbr = Boolean.TRUE.equals(props.get("mp3.vbr"));
+			HashMap<String, String> t = new HashMap<>();
+			for(String key : TAGS){
+				Object value = props.get(key);
+				if(value instanceof String) t.put(key, (String) value);
+			}
+			tags = Collections.unmodifiableMap(t);
+		}
+
+		public Path getPath(){
+			return path;
+		}
+
+		/** Returns the duration in microseconds, or -1 if unknown. */
+		public long getDuration(){
+			return duration;
+		}
+
+		/** Returns the nominal bitrate in bits per second. */
+		public int getBitrate(){
+			return bitrate;
+		}
+
+		public boolean isVbr(){
+			return vbr;
+		}
+
+		public int getSampleRate(){
+			return sampleRate;
+		}
+
+		public int getChannels(){
+			return channels;
+		}
+
+		/**
+		 * Returns the tag fields, such as "title", "author", "album", "date", "comment" and "mp3.id3tag.genre", under the names of the properties
+		 * of <code>MpegAudioFileReader</code>. The ID3v1 fields fill those missing from the ID3v2 tag.
+		 */
+		public Map<String, String> getTags(){
+			return tags;
+		}
+
+		/** Returns a tag field, or null. */
+		public String getTag(String name){
+			return tags.get(name);
+		}
+
+		@Override
+		public String toString(){
+			return path + " [" + duration / 1000 + " ms, " + bitrate + " bps" + (vbr ? " VBR, " : ", ") + sampleRate + " Hz, " + channels + " ch] " + tags;
+		}
+	}
+}
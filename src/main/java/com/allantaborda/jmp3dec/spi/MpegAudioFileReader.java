@@ -29,16 +29,25 @@ import com.allantaborda.jmp3dec.tag.IcyInputStream;
 import com.allantaborda.jmp3dec.tag.IcyListener;
 import com.allantaborda.jmp3dec.tag.MP3Tag;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PushbackInputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -51,8 +60,13 @@ import javax.sound.sampled.spi.AudioFileReader;
 
 /** This class implements AudioFileReader for MP3 SPI. */
 public class MpegAudioFileReader extends AudioFileReader{
+	/** Upper bound of the bytes read by the probe, so of the mark window. Buffers wrapped around unmarkable streams grow only as far as read. */
 	private static int INITAL_READ_LENGTH = 4096000;
 	private static int MARK_LIMIT = INITAL_READ_LENGTH + 1;
+	/** Number of bytes after the ID3v2 tag within which the probe must find a frame followed by another. */
+	private static final int PROBE_LIMIT = 65536;
+	/** The formats of the files read, or null if they aren't cached. */
+	private static volatile FormatCache formatCache;
 	private static final Charset[] CHARSETS = { StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16, StandardCharsets.UTF_16BE, StandardCharsets.UTF_8 };
 	private static final AudioFormat.Encoding[][] sm_aEncodings = {
 			{ MpegConstants.MPEG1L1, MpegConstants.MPEG1L2, MpegConstants.MPEG1L3 },
@@ -60,6 +74,8 @@ public class MpegAudioFileReader extends AudioFileReader{
 			{ MpegConstants.MPEG2DOT5L1, MpegConstants.MPEG2DOT5L2, MpegConstants.MPEG2DOT5L3 } };
 
 	static{
+		Integer entries = Integer.getInteger("jmp3dec.formatcache");
+		if(entries != null && entries > 0) formatCache = new FormatCache(entries);
 		String s = System.getProperty("marklimit");
 		if(s != null){
 			try{
@@ -91,23 +107,72 @@ public class MpegAudioFileReader extends AudioFileReader{
 			"Christian Rock", "Merengue", "Salsa", "Thrash Metal", "Anime", "JPop", "SynthPop" };
 
 	/**
-	 * Get an AudioFileFormat object for a File. This method calls getAudioFileFormat(InputStream, long). Subclasses should not override
-	 * this method unless there are really severe reasons. Normally, it is sufficient to implement getAudioFileFormat(InputStream, long).
+	 * Get an AudioFileFormat object for a File. This method calls getAudioFileFormat(Path).
 	 * @param file The file to read from.
 	 * @return An AudioFileFormat instance containing information from the header of the file passed in.
 	 */
 	@Override
 	public AudioFileFormat getAudioFileFormat(File file) throws UnsupportedAudioFileException, IOException{
-		InputStream inputStream = new FileInputStream(file);
-		AudioFileFormat audioFileFormat = null;
-		try{
-			audioFileFormat = getAudioFileFormat(inputStream, file.length());
-		}finally{
-			inputStream.close();
+		return getAudioFileFormat(file.toPath());
+	}
+
+	/**
+	 * Get an AudioFileFormat object for a file. The file is read with positional reads of its head, its ID3v2 tag, its first frames and its
+	 * ID3v1 tag only. With the format cache, the format is read again only if the size or the modification time of the file changed.
+	 * @param path The file to read from.
+	 * @return An AudioFileFormat instance containing information from the header of the file passed in.
+	 * @see #setFormatCacheSize(int)
+	 */
+	public AudioFileFormat getAudioFileFormat(Path path) throws UnsupportedAudioFileException, IOException{
+		FormatCache cache = formatCache;
+		BasicFileAttributes attrs = null;
+		if(cache != null){
+			attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			AudioFileFormat cached = cache.get(path, attrs);
+			if(cached != null) return ((MPEGAudioFileFormat) cached).copy();
+		}
+		MPEGAudioFileFormat audioFileFormat;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			audioFileFormat = getAudioFileFormat(channel);
+		}
+		if(cache != null){
+			// Each copy of a cached format gets its own stream of the ID3v2 tag.
+			InputStream id3v2 = (InputStream) audioFileFormat.props.get("mp3.id3tag.v2");
+			if(id3v2 != null){
+				audioFileFormat.id3v2 = new byte[id3v2.available()];
+				id3v2.read(audioFileFormat.id3v2);
+				id3v2.reset();
+			}
+			cache.put(path, attrs, audioFileFormat);
 		}
 		return audioFileFormat;
 	}
 
+	/** Returns the AudioFileFormat of a file, whose ID3v1 tag is read at its end and whose head is probed like a stream, up to PROBE_LIMIT. */
+	private MPEGAudioFileFormat getAudioFileFormat(FileChannel channel) throws UnsupportedAudioFileException, IOException{
+		long size = channel.size();
+		byte[] id3v1 = size >= 128 ? read(channel, size - 128, 128) : null;
+		return getAudioFileFormat(Channels.newInputStream(channel), size, false, id3v1);
+	}
+
+	/** Reads bytes of a file at a position, returning them padded with zeros after its end. */
+	private static byte[] read(FileChannel channel, long position, int len) throws IOException{
+		ByteBuffer b = ByteBuffer.allocate(len);
+		while(b.hasRemaining() && channel.read(b, position + b.position()) > 0);
+		return b.array();
+	}
+
+	/**
+	 * Sets the number of file formats kept by <code>getAudioFileFormat(File)</code> and <code>getAudioFileFormat(Path)</code>, the least recently
+	 * used being dropped. The cache is shared by all the readers and is off by default, or set by the system property
+	 * <code>jmp3dec.formatcache</code>.
+	 * @param entries The number of formats kept, or 0 to turn off the cache.
+	 */
+	public static void setFormatCacheSize(int entries){
+		if(entries < 0) throw new IllegalArgumentException("Invalid cache size: " + entries);
+		formatCache = entries > 0 ? new FormatCache(entries) : null;
+	}
+
 	/** Returns AudioFileFormat from URL. */
 	public AudioFileFormat getAudioFileFormat(URL url) throws UnsupportedAudioFileException, IOException{
 		URLConnection conn = url.openConnection();
@@ -131,7 +196,7 @@ public class MpegAudioFileReader extends AudioFileReader{
 	 */
 	@Override
 	public AudioFileFormat getAudioFileFormat(InputStream inputStream) throws UnsupportedAudioFileException, IOException{
-		if(!inputStream.markSupported()) inputStream = new BufferedInputStream(inputStream, MARK_LIMIT);
+		if(!inputStream.markSupported()) inputStream = new BufferedInputStream(inputStream);
 		inputStream.mark(MARK_LIMIT);
 		AudioFileFormat audioFileFormat = null;
 		try{
@@ -145,14 +210,28 @@ public class MpegAudioFileReader extends AudioFileReader{
 
 	/** Returns AudioFileFormat from inputstream and medialength. */
 	public AudioFileFormat getAudioFileFormat(InputStream inputStream, long mediaLength) throws UnsupportedAudioFileException, IOException{
+		return getAudioFileFormat(inputStream, mediaLength, false, null);
+	}
+
+	/**
+	 * Returns AudioFileFormat from inputstream and medialength.
+	 * @param keep Whether to keep in the format the bitstream left after the first frame, if the stream wasn't read further.
+	 * @param id3v1 The last 128 bytes of the file, read apart, or null.
+	 */
+	private MPEGAudioFileFormat getAudioFileFormat(InputStream inputStream, long mediaLength, boolean keep, byte[] id3v1) throws UnsupportedAudioFileException, IOException{
 		//TODO Reformar este método!
 		HashMap<String, Object> aff_properties = new HashMap<>();
 		HashMap<String, Object> af_properties = new HashMap<>();
 		int mLength = (int) mediaLength;
 		int size = inputStream.available();
-		PushbackInputStream pis = new PushbackInputStream(inputStream, MARK_LIMIT);
 		byte head[] = new byte[22];
+		boolean icy = false;
+		ProbeInputStream probe = new ProbeInputStream(inputStream);
+		// Only the head is unread, and a bitstream kept by getAudioInputStream keeps the buffer.
+		PushbackInputStream pis = new PushbackInputStream(probe, head.length);
 		pis.read(head);
+		// The probe reads the ID3v2 tag, skipped by its declared size, and at most PROBE_LIMIT bytes after it.
+		probe.limit = id3v2Size(head) + PROBE_LIMIT;
 		// Check for WAV, AU, and AIFF, Ogg Vorbis, Flac, MAC file formats.
 		// Next check for Shoutcast (supported) and OGG (unsupported) streams.
 		if ((head[0] == 'R') && (head[1] == 'I') && (head[2] == 'F') && (head[3] == 'F') && (head[8] == 'W')
@@ -178,6 +257,7 @@ public class MpegAudioFileReader extends AudioFileReader{
 			pis.unread(head);
 			// Load shoutcast meta data.
 			loadShoutcastInfo(pis, aff_properties);
+			icy = true;
 		}
 		// Ogg stream ?
 		else if (((head[0] == 'O') | (head[0] == 'o')) && ((head[1] == 'G') | (head[1] == 'g'))
@@ -204,11 +284,13 @@ public class MpegAudioFileReader extends AudioFileReader{
 		int nTotalMS = AudioSystem.NOT_SPECIFIED;
 		boolean nVBR = false;
 		AudioFormat.Encoding encoding = null;
+		Bitstream m_bitstream = null;
+		Header m_header = null;
 		try{
-			Bitstream m_bitstream = new Bitstream(pis);
+			m_bitstream = new Bitstream(pis);
 			int streamPos = m_bitstream.header_pos();
 			aff_properties.put("mp3.header.pos", new Integer(streamPos));
-			Header m_header = m_bitstream.readFrame();
+			m_header = m_bitstream.readFrame();
 			// nVersion = 0 => MPEG2-LSF (Including MPEG2.5), nVersion = 1 => MPEG1
 			nVersion = m_header.version();
 			if (nVersion == 2)
@@ -266,6 +348,8 @@ public class MpegAudioFileReader extends AudioFileReader{
 		} catch (Exception e){
 			throw new UnsupportedAudioFileException("not a MPEG stream:" + e.getMessage());
 		}
+		// The header read was followed by another, which the bitstream checks before accepting a frame: the bitstream can read on.
+		probe.limit = Long.MAX_VALUE;
 		// Deeper checks ?
 		int cVersion = (nHeader >> 19) & 0x3;
 		if (cVersion == 1){
@@ -276,21 +360,29 @@ public class MpegAudioFileReader extends AudioFileReader{
 			throw new UnsupportedAudioFileException("not a MPEG stream: wrong sampling rate");
 		}
 		// Look up for ID3v1 tag
-		if ((size == mediaLength) && (mediaLength != AudioSystem.NOT_SPECIFIED)){
+		boolean tail = id3v1 == null && (size == mediaLength) && (mediaLength != AudioSystem.NOT_SPECIFIED) && inputStream instanceof FileInputStream;
+		if (tail){
 			FileInputStream fis = (FileInputStream) inputStream;
-			byte[] id3v1 = new byte[128];
+			id3v1 = new byte[128];
 			fis.skip(inputStream.available() - id3v1.length);
 			fis.read(id3v1, 0, id3v1.length);
-			if ((id3v1[0] == 'T') && (id3v1[1] == 'A') && (id3v1[2] == 'G')){
-				parseID3v1Frames(id3v1, aff_properties);
-			}
+		}
+		if ((id3v1 != null) && (id3v1[0] == 'T') && (id3v1[1] == 'A') && (id3v1[2] == 'G')){
+			parseID3v1Frames(id3v1, aff_properties);
 		}
 		AudioFormat format = new AudioFormat(encoding, nFrequency, AudioSystem.NOT_SPECIFIED // SampleSizeInBits - The size of a sample
 				, nChannels // Channels - The number of channels
 				, -1 // The number of bytes in each frame
 				, FrameRate // FrameRate - The number of frames played or recorded per second
 				, true, af_properties);
-		return new MPEGAudioFileFormat(MpegConstants.MP3, format, mLength, nTotalFrames, aff_properties);
+		MPEGAudioFileFormat aff = new MPEGAudioFileFormat(MpegConstants.MP3, format, mLength, nTotalFrames, aff_properties);
+		// The shoutcast info and the ID3v1 tag are read apart from the bitstream, which then can't read on.
+		if(keep && !icy && !tail){
+			aff.bitstream = m_bitstream;
+			aff.header = m_header;
+			aff.available = size;
+		}
+		return aff;
 	}
 
 	/** Returns AudioInputStream from file. */
@@ -352,7 +444,7 @@ public class MpegAudioFileReader extends AudioFileReader{
 	/** Return the AudioInputStream from the given InputStream. */
 	public AudioInputStream getAudioInputStream(InputStream inputStream) throws UnsupportedAudioFileException, IOException{
 		AudioInputStream audioInputStream = null;
-		if(!inputStream.markSupported()) inputStream = new BufferedInputStream(inputStream, MARK_LIMIT);
+		if(!inputStream.markSupported()) inputStream = new BufferedInputStream(inputStream);
 		inputStream.mark(MARK_LIMIT);
 		try{
 			audioInputStream = getAudioInputStream(inputStream, AudioSystem.NOT_SPECIFIED);
@@ -384,13 +476,23 @@ public class MpegAudioFileReader extends AudioFileReader{
 	 * This value may be used for byteLength in AudioFileFormat, if this value can't be derived from the information in the file header.
 	 */
 	protected AudioInputStream getAudioInputStream(InputStream inputStream, long lFileLengthInBytes) throws UnsupportedAudioFileException, IOException{
-		if(!inputStream.markSupported()) inputStream = new BufferedInputStream(inputStream, MARK_LIMIT);
+		if(!inputStream.markSupported()) inputStream = new BufferedInputStream(inputStream);
 		inputStream.mark(MARK_LIMIT);
-		AudioFileFormat audioFileFormat = getAudioFileFormat(inputStream, lFileLengthInBytes);
+		MPEGAudioFileFormat audioFileFormat = getAudioFileFormat(inputStream, lFileLengthInBytes, true, null);
+		// The decoding stream reads on from the bitstream, so the stream is reset only if it's read itself.
+		if(audioFileFormat.bitstream != null) return new ParsedAudioInputStream(inputStream, audioFileFormat.getFormat(), audioFileFormat.getFrameLength(),
+				audioFileFormat.available, audioFileFormat.bitstream, audioFileFormat.header);
 		inputStream.reset();
 		return new AudioInputStream(inputStream, audioFileFormat.getFormat(), audioFileFormat.getFrameLength());
 	}
 
+	/** Returns the size of the ID3v2 tag that starts a head, with its header and footer, or 0. */
+	private static long id3v2Size(byte[] head){
+		if(head[0] != 'I' || head[1] != 'D' || head[2] != '3') return 0;
+		long size = (head[6] & 0x7F) << 21 | (head[7] & 0x7F) << 14 | (head[8] & 0x7F) << 7 | (head[9] & 0x7F);
+		return 10 + size + ((head[5] & 0x10) != 0 ? 10 : 0);
+	}
+
 	/**
 	 * Parser ID3v1 frames.
 	 * @param frames The frames.
@@ -589,14 +691,67 @@ public class MpegAudioFileReader extends AudioFileReader{
 
 	private class MPEGAudioFileFormat extends AudioFileFormat{
 		private Map<String, Object> props;
+		/** The bitstream left after the first frame, its header and the bytes available before, kept for getAudioInputStream. */
+		private Bitstream bitstream;
+		private Header header;
+		private int available;
+		/** The raw ID3v2 tag of a cached format, or null. */
+		private byte[] id3v2;
 
 		MPEGAudioFileFormat(Type type, AudioFormat format, int mediaLength, int nTotalFrames, Map<String, Object> properties){
 			super(type, mediaLength, format, nTotalFrames);
 			props = Collections.unmodifiableMap(properties);
 		}
 
+		/** Returns a copy of a cached format with a stream of its own of the ID3v2 tag. */
+		MPEGAudioFileFormat copy(){
+			if(id3v2 == null) return this;
+			HashMap<String, Object> properties = new HashMap<>(props);
+			properties.put("mp3.id3tag.v2", new ByteArrayInputStream(id3v2));
+			return new MPEGAudioFileFormat(getType(), getFormat(), getByteLength(), getFrameLength(), properties);
+		}
+
 		public Map<String, Object> properties(){
 			return props;
 		}
 	}
+
+	/** Stream read by the probe, which ends after a limit of bytes from the start, so a stream that isn't MPEG audio isn't read to its end. */
+	private static final class ProbeInputStream extends FilterInputStream{
+		long limit = Long.MAX_VALUE;
+		private long count;
+
+		ProbeInputStream(InputStream in){
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException{
+			if(count >= limit) return -1;
+			int b = in.read();
+			if(b >= 0) count++;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException{
+			if(len == 0) return 0;
+			if(count >= limit) return -1;
+			int n = in.read(b, off, (int) Math.min(len, limit - count));
+			if(n > 0) count += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException{
+			long skipped = in.skip(Math.min(n, Math.max(0, limit - count)));
+			count += skipped;
+			return skipped;
+		}
+
+		@Override
+		public boolean markSupported(){
+			return false;
+		}
+	}
 }
\ No newline at end of file
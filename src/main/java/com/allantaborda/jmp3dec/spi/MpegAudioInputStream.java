@@ -25,33 +25,63 @@ package com.allantaborda.jmp3dec.spi;
 
 import com.allantaborda.jmp3dec.decoder.Bitstream;
 import com.allantaborda.jmp3dec.decoder.BitstreamException;
+import com.allantaborda.jmp3dec.decoder.ByteSampleBuffer;
 import com.allantaborda.jmp3dec.decoder.Decoder;
 import com.allantaborda.jmp3dec.decoder.DecoderException;
 import com.allantaborda.jmp3dec.decoder.Equalizer;
+import com.allantaborda.jmp3dec.decoder.FrameIndex;
+import com.allantaborda.jmp3dec.decoder.FrameSource;
 import com.allantaborda.jmp3dec.decoder.Header;
 import com.allantaborda.jmp3dec.decoder.Obuffer;
+import com.allantaborda.jmp3dec.decoder.OutputChannels;
 import com.allantaborda.jmp3dec.tag.IcyListener;
 import com.allantaborda.jmp3dec.tag.TagParseEvent;
 import com.allantaborda.jmp3dec.tag.TagParseListener;
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
 
 /** Main decoder. */
 public class MpegAudioInputStream extends AudioInputStream implements TagParseListener{
-	private TCircularBuffer m_circularBuffer;
+	/** The decoded bytes not read yet. The frames are decoded by the thread reading the stream or, with decode-ahead, by a worker. */
+	private volatile ByteRing m_circularBuffer;
+	/** Decode-ahead: the executor of the worker, or null to decode on the reading thread, and the watermarks in bytes. */
+	private Executor m_executor;
+	private int m_highWatermark, m_lowWatermark;
+	/** True while a worker is decoding ahead. */
+	private final AtomicBoolean m_decoding = new AtomicBoolean();
+	/** The capacity of the ring set by setBufferCapacity, applied by the next read, or 0. */
+	private final AtomicInteger m_capacity = new AtomicInteger();
+	/** The thread waiting in a read for the worker, if any. */
+	private volatile Thread m_reader;
+	private volatile boolean m_closed;
+	/** The error that closed the ring before the end of the stream, thrown by the reads that find the ring empty. */
+	private volatile IOException m_failure;
 	private byte[] m_abSingleByte;
-	private InputStream m_encodedStream;
+	private Closeable m_encodedStream;
 	private Bitstream m_bitstream;
 	private Decoder m_decoder;
 	private Equalizer m_equalizer;
 	private float[] m_equalizer_values;
 	private Header m_header;
-	private DMAISObuffer m_oBuffer;
+	private ByteSampleBuffer m_oBuffer;
+	private FrameIndex m_index;
+	/** Header of the first frame, which keeps the Xing or VBRI header info, and the offset of the first frame. */
+	private Header m_firstHeader;
+	private long m_firstFrame;
+	private boolean m_seekable;
 	// Bytes info
 	private long byteslength = -1;
 	private long currentByte;
@@ -67,34 +97,79 @@ public class MpegAudioInputStream extends AudioInputStream implements TagParseLi
 	private HashMap<String, Object> properties;
 
 	public MpegAudioInputStream(AudioFormat outputFormat, AudioInputStream inputStream){
+		this(outputFormat, inputStream, null);
+	}
+
+	/**
+	 * Creates a decoding stream that seeks with a frame index.
+	 * @param outputFormat The PCM format.
+	 * @param inputStream The encoded stream, from its start.
+	 * @param index The index of the frames of the encoded stream, or null.
+	 */
+	public MpegAudioInputStream(AudioFormat outputFormat, AudioInputStream inputStream, FrameIndex index){
+		this(outputFormat, inputStream, index, ParsedAudioInputStream.of(inputStream));
+	}
+
+	/** Creates a decoding stream that reuses the bitstream left after the first frame by <code>MpegAudioFileReader</code>, if any. */
+	private MpegAudioInputStream(AudioFormat outputFormat, AudioInputStream inputStream, FrameIndex index, ParsedAudioInputStream parsed){
+		this(outputFormat, parsed != null ? parsed.take() : new Bitstream(inputStream), inputStream, parsed != null ? parsed.length : available(inputStream), index, false,
+				parsed != null ? parsed.header : null);
+	}
+
+	/**
+	 * Creates a decoding stream that reads a frame source. Seekable sources can seek in time with <code>seekMicroseconds</code> without reading the
+	 * frames before the target.
+	 * @param outputFormat The PCM format.
+	 * @param source The encoded stream, from its start.
+	 * @param index The index of the frames of the encoded stream, or null.
+	 */
+	public MpegAudioInputStream(AudioFormat outputFormat, FrameSource source, FrameIndex index){
+		this(outputFormat, new Bitstream(source), source, length(source), index, source.isSeekable(), null);
+	}
+
+	private MpegAudioInputStream(AudioFormat outputFormat, Bitstream bitstream, Closeable encodedStream, long length, FrameIndex index, boolean seekable, Header first){
 		/*
 		 * The usage of a ByteArrayInputStream is a hack. (the infamous "JavaOne hack", because I did it on June 6th 2000 in San Francisco, only hours
 		 * before a JavaOne session where I wanted to show mp3 playback with Java Sound.) It is necessary because in the FCS version of the Sun jdk1.3,
 		 * the constructor of AudioInputStream throws an exception if its first argument is null. So we have to pass a dummy non-null value.
 		 */
 		super(new ByteArrayInputStream(new byte[0]), outputFormat, -1);
-		m_circularBuffer = new TCircularBuffer(this);
-		try{
-			// Try to find out inputstream length to allow skip.
-			byteslength = inputStream.available();
-		}catch(IOException e){
-			System.err.println("MpegAudioInputStream : Cannot run inputStream.available() : " + e.getMessage());
-			byteslength = -1;
-		}
-		m_encodedStream = inputStream;
+		byteslength = length;
+		m_encodedStream = encodedStream;
+		m_seekable = seekable;
 		shoutlst = IcyListener.getInstance();
 		shoutlst.reset();
-		m_bitstream = new Bitstream(inputStream);
-		m_decoder = new Decoder(null);
+		m_bitstream = bitstream;
+		// A mono output format decodes the downmix of stereo streams, running a single synthesis filter.
+		Decoder.Params params = Decoder.getDefaultParams();
+		if(outputFormat.getChannels() == 1) params.setOutputChannels(OutputChannels.DOWNMIX);
+		m_decoder = new Decoder(params);
 		m_equalizer = new Equalizer();
 		m_equalizer_values = new float[32];
 		for(int b = 0; b < m_equalizer.getBandCount(); b++) m_equalizer_values[b] = m_equalizer.getBand(b);
 		m_decoder.setEqualizer(m_equalizer);
-		m_oBuffer = new DMAISObuffer(outputFormat.getChannels());
+		// Floats have 32 bits; integers of sizes other than 24 and 32 bits, or of unknown size, are written with 16 bits.
+		boolean floating = AudioFormat.Encoding.PCM_FLOAT.equals(outputFormat.getEncoding());
+		int bits = outputFormat.getSampleSizeInBits();
+		if(floating) bits = 32;
+		else if(bits != 24 && bits != 32) bits = 16;
+		m_oBuffer = new ByteSampleBuffer((int) outputFormat.getSampleRate(), outputFormat.getChannels(), bits, floating, outputFormat.isBigEndian());
+		m_circularBuffer = new ByteRing(minimumCapacity());
 		m_decoder.setOutputBuffer(m_oBuffer);
 		try{
-			m_header = m_bitstream.readFrame();
-			if(m_header != null && frameslength == -1 && byteslength > 0) frameslength = m_header.max_number_of_frames((int) byteslength);
+			// The first frame may have been read already by the file reader.
+			m_header = first != null ? first : m_bitstream.readFrame();
+			m_firstHeader = m_header;
+			// An output format at half or a quarter of the sample rate of the stream is decoded with the reduced-rate synthesis.
+			if(m_header != null){
+				float rate = outputFormat.getSampleRate();
+				if(rate == m_header.frequency() / 2) m_decoder.setDownsampling(2);
+				else if(rate == m_header.frequency() / 4) m_decoder.setDownsampling(4);
+			}
+			if(m_header != null) m_firstFrame = m_bitstream.frame_pos();
+			m_index = index;
+			if(index != null) frameslength = index.frames();
+			else if(m_header != null && frameslength == -1 && byteslength > 0) frameslength = m_header.max_number_of_frames((int) byteslength);
 		}catch(BitstreamException e){
 			System.err.println("MpegAudioInputStream : Cannot read first frame : " + e.getMessage());
 			byteslength = -1;
@@ -102,6 +177,26 @@ public class MpegAudioInputStream extends AudioInputStream implements TagParseLi
 		properties = new HashMap<>();
 	}
 
+	/** Returns the length of a stream, to allow skip. */
+	private static long available(InputStream in){
+		try{
+			return in.available();
+		}catch(IOException e){
+			System.err.println("MpegAudioInputStream : Cannot run inputStream.available() : " + e.getMessage());
+			return -1;
+		}
+	}
+
+	/** Returns the length of a source, to allow skip. */
+	private static long length(FrameSource source){
+		try{
+			return source.length();
+		}catch(IOException e){
+			System.err.println("MpegAudioInputStream : Cannot read the source length : " + e.getMessage());
+			return -1;
+		}
+	}
+
 	public int read() throws IOException{
 		int nByte = -1;
 		if(m_abSingleByte == null) m_abSingleByte = new byte[1];
@@ -118,13 +213,163 @@ public class MpegAudioInputStream extends AudioInputStream implements TagParseLi
 
 	@Override
 	public int read(byte[] abData, int nOffset, int nLength) throws IOException{
-		// $$fb 2001-04-22: this returns at maximum circular buffer length. This is not very efficient...
 		// $$fb 2001-04-25: we should check that we do not exceed getFrameLength()!
-		return m_circularBuffer.read(abData, nOffset, nLength);
+		if(m_capacity.get() != 0) resizeRing();
+		ByteRing ring = m_circularBuffer;
+		if(m_executor != null){
+			// The worker decodes, so the read only copies the bytes available, waiting for the worker only if there are none.
+			if(ring.available() == 0) awaitBytes(ring);
+		}else{
+			// Frames are decoded while they fit in the ring, so fewer bytes than asked may be returned if the ring is smaller than the read.
+			int frame = minimumCapacity() / 2;
+			while(ring.isOpen() && ring.available() < nLength && ring.capacity() - ring.available() >= frame && decodeFrame());
+		}
+		if(!ring.isOpen() && ring.available() == 0){
+			IOException failure = m_failure;
+			if(failure != null) throw failure;
+			System.err.println("< not open. returning -1.");
+			return -1;
+		}
+		int n = ring.read(abData, nOffset, nLength);
+		if(m_executor != null && ring.available() < m_lowWatermark) startDecoding();
+		return n;
+	}
+
+	/** Waits until the worker has decoded bytes or the stream ends. */
+	private void awaitBytes(ByteRing ring) throws IOException{
+		m_reader = Thread.currentThread();
+		try{
+			while(ring.available() == 0 && ring.isOpen() && !m_closed){
+				startDecoding();
+				LockSupport.park(this);
+				if(Thread.currentThread().isInterrupted()) throw new InterruptedIOException("Interrupted while waiting for the decoded bytes");
+			}
+		}finally{
+			m_reader = null;
+		}
+	}
+
+	/**
+	 * Enables decode-ahead with a shared pool of daemon threads. See <code>setDecodeAhead(Executor, int, int)</code>.
+	 * @param highMillis The read-ahead target, in milliseconds of PCM.
+	 * @param lowMillis The level in milliseconds of PCM below which the worker is restarted.
+	 */
+	public void setDecodeAhead(int highMillis, int lowMillis){
+		setDecodeAhead(DecodeAheadPool.EXECUTOR, highMillis, lowMillis);
+	}
+
+	/**
+	 * Enables or disables decode-ahead, by the thread reading the stream. A worker run by the executor then decodes the frames until the high
+	 * watermark of PCM is buffered and stops; reads only copy the bytes decoded, and restart the worker once fewer than the low watermark are left.
+	 * The frame, byte and time properties then count the frames decoded, which are ahead of the bytes read. The ring is enlarged to hold the high
+	 * watermark and a frame.
+	 * @param executor The executor of the worker, such as a pool or a virtual thread per task executor, or null to decode on the reading thread.
+	 * @param highMillis The read-ahead target, in milliseconds of PCM.
+	 * @param lowMillis The level in milliseconds of PCM below which the worker is restarted, at most <code>highMillis</code>.
+	 */
+	public void setDecodeAhead(Executor executor, int highMillis, int lowMillis){
+		if(executor != null && (highMillis <= 0 || lowMillis < 0 || lowMillis > highMillis)) throw new IllegalArgumentException("Invalid watermarks: " + highMillis + ", " + lowMillis);
+		if(executor != null){
+			int high = millisToBytes(highMillis);
+			if(high <= 0) throw new IllegalArgumentException("Invalid high watermark: " + highMillis + " ms are " + high + " bytes");
+			m_highWatermark = high;
+			m_lowWatermark = millisToBytes(lowMillis);
+			if(getBufferCapacity() < m_highWatermark + minimumCapacity() / 2) setBufferCapacity(m_highWatermark + minimumCapacity() / 2);
+		}
+		m_executor = executor;
+	}
+
+	/** Starts the worker, unless it's running. */
+	private void startDecoding(){
+		if(m_decoding.compareAndSet(false, true)){
+			try{
+				m_executor.execute(this::decodeAhead);
+			}catch(RuntimeException e){
+				m_decoding.set(false);
+				throw e;
+			}
+		}
+	}
+
+	/** Worker: decodes frames up to the high watermark, then keeps going if a read went below the low watermark before it stopped. */
+	private void decodeAhead(){
+		do{
+			try{
+				while(decodeAheadFrame()) wakeReader();
+			}finally{
+				m_decoding.set(false);
+				wakeReader();
+			}
+		}while(!m_closed && m_circularBuffer.isOpen() && m_circularBuffer.available() < m_lowWatermark && m_decoding.compareAndSet(false, true));
+	}
+
+	/**
+	 * Worker: decodes a frame if the ring is below the high watermark, returning false otherwise or if no frame was read. A stream error closes the
+	 * ring, which wakes the reader to throw it. So does a ring left empty without decoding, as the reader would wait for it forever.
+	 */
+	private synchronized boolean decodeAheadFrame(){
+		ByteRing ring = m_circularBuffer;
+		int available = ring.available();
+		if(m_closed || !ring.isOpen()) return false;
+		if(available >= m_highWatermark || ring.capacity() - available < minimumCapacity() / 2){
+			if(available == 0){
+				m_failure = new IOException("Decode-ahead stopped with no bytes decoded: watermark " + m_highWatermark + ", capacity " + ring.capacity());
+				ring.close();
+			}
+			return false;
+		}
+		return decodeFrame();
+	}
+
+	private void wakeReader(){
+		Thread reader = m_reader;
+		if(reader != null) LockSupport.unpark(reader);
 	}
 
 	public int available() throws IOException{
-		return m_circularBuffer.availableRead();
+		return m_circularBuffer.available();
+	}
+
+	/**
+	 * Sets the capacity of the buffer of decoded bytes, rounded up to a power of two. It's at least twice the bytes of a frame, so a frame can be
+	 * decoded whenever fewer bytes are available than a read asks for. Any thread may call it: the buffer is replaced by the thread reading the
+	 * stream, at its next read, keeping the bytes decoded and not read yet.
+	 * @param bytes The capacity in bytes.
+	 */
+	public void setBufferCapacity(int bytes){
+		m_capacity.set(ByteRing.size(Math.max(bytes, minimumCapacity())));
+	}
+
+	/** Returns the capacity of the buffer of decoded bytes, including a capacity set but not applied by a read yet. */
+	public int getBufferCapacity(){
+		int capacity = m_capacity.get();
+		return capacity != 0 ? capacity : m_circularBuffer.capacity();
+	}
+
+	/** Consumer: replaces the ring with one of the capacity set, while the worker isn't decoding. */
+	private synchronized void resizeRing(){
+		int capacity = m_capacity.getAndSet(0);
+		if(capacity == 0 || capacity == m_circularBuffer.capacity()) return;
+		byte[] b = new byte[m_circularBuffer.available()];
+		ByteRing ring = new ByteRing(Math.max(capacity, b.length));
+		ring.write(b, 0, m_circularBuffer.read(b, 0, b.length));
+		if(!m_circularBuffer.isOpen()) ring.close();
+		m_circularBuffer = ring;
+	}
+
+	/** Returns the capacity needed by the bytes of two frames of 1152 samples. */
+	private int minimumCapacity(){
+		return 2 * (Obuffer.OBUFFERSIZE / 2) * m_oBuffer.getChannelCount() * m_oBuffer.getSampleSizeInBits() / 8;
+	}
+
+	/**
+	 * Returns the bytes of PCM of a duration, in whole sample frames. The rate is the output rate of the stream, as the target format may not
+	 * specify it.
+	 */
+	private int millisToBytes(int millis){
+		float rate = m_firstHeader != null ? m_firstHeader.frequency() / m_decoder.getDownsampling() : getFormat().getSampleRate();
+		long frames = (long) millis * (long) rate / 1000;
+		return (int) Math.min(frames * m_oBuffer.getChannelCount() * m_oBuffer.getSampleSizeInBits() / 8, 1 << 29);
 	}
 
 	public boolean markSupported(){
@@ -173,49 +418,170 @@ public class MpegAudioInputStream extends AudioInputStream implements TagParseLi
 		return properties;
 	}
 
-	public void execute(){
+	/**
+	 * Decodes the next frame to the ring, which the callers check has room for a frame. Synchronized, so seeking waits for the frame decoded ahead.
+	 * A frame that can't be decoded is skipped. If the stream can't be read, or the frame doesn't fit in the ring, the ring is closed and the error
+	 * is thrown by the reads that find the ring empty.
+	 * @return false if no frame was read, at the end of the stream or on an error.
+	 */
+	private synchronized boolean decodeFrame(){
+		Header header = null;
 		try{
 			// Following line hangs when FrameSize is available in AudioFormat.
-			Header header = null;
 			if(m_header == null) header = m_bitstream.readFrame();
 			else header = m_header;
-			if(header == null){
+		}catch(BitstreamException e){
+			System.err.println(e);
+			m_failure = new IOException("Cannot read the MPEG stream", e);
+		}
+		if(header == null){
+			m_circularBuffer.close();
+			return false;
+		}
+		m_header = null;
+		currentFrame++;
+		currentBitrate = header.bitrate_instant();
+		currentFramesize = header.calculate_framesize();
+		currentByte = currentByte + currentFramesize;
+		currentMicrosecond = (long) (currentFrame * header.ms_per_frame() * 1000.0f);
+		for(int b = 0; b < m_equalizer_values.length; b++) m_equalizer.setBand(b, m_equalizer_values[b]);
+		m_decoder.setEqualizer(m_equalizer);
+		boolean written = true;
+		try{
+			m_decoder.decodeFrame(header, m_bitstream);
+			// The decoder trims the samples before a seek target or outside the source with gapless decoding.
+			int length = m_oBuffer.getByteLength();
+			if(m_circularBuffer.write(m_oBuffer.getBuffer(), 0, length) < length){
+				m_failure = new IOException("The decoded frame of " + length + " bytes overflows the buffer of " + m_circularBuffer.capacity() + " bytes");
 				m_circularBuffer.close();
-				return;
+				written = false;
 			}
-			currentFrame++;
-			currentBitrate = header.bitrate_instant();
-			currentFramesize = header.calculate_framesize();
-			currentByte = currentByte + currentFramesize;
-			currentMicrosecond = (long) (currentFrame * header.ms_per_frame() * 1000.0f);
-			for(int b = 0; b < m_equalizer_values.length; b++) m_equalizer.setBand(b, m_equalizer_values[b]);
-			m_decoder.setEqualizer(m_equalizer);
-			m_decoder.decodeFrame(header, m_bitstream);
-			m_bitstream.closeFrame();
-			m_circularBuffer.write(m_oBuffer.getBuffer(), 0, m_oBuffer.getCurrentBufferSize());
-			m_oBuffer.reset();
-			if(m_header != null) m_header = null;
-		}catch(BitstreamException | DecoderException e){
+		}catch(DecoderException e){
 			System.err.println(e);
 		}
+		m_bitstream.closeFrame();
+		m_oBuffer.clear_buffer();
+		return written;
 	}
 
-	public long skip(long bytes){
+	public synchronized long skip(long bytes){
+		if(m_index != null && currentFrame < m_index.frames()){
+			if(bytes <= 0) return 0;
+			// Jump to the first frame at or after the target offset, at most to the last frame.
+			long from = m_index.offset((int) currentFrame);
+			int frame = Math.min(m_index.frameAtOffset(from + bytes), m_index.frames() - 1);
+			try{
+				m_bitstream.seek(m_index.offset(frame));
+			}catch(BitstreamException e){
+				System.err.println(e);
+				return 0;
+			}
+			long bytesread = m_index.offset(frame) - from;
+			currentFrame = frame;
+			currentByte = currentByte + bytesread;
+			m_header = null;
+			m_decoder.seek_notify(m_index.sample(frame));
+			dropDecodedAhead();
+			return bytesread;
+		}
 		if(byteslength > 0 && frameslength > 0){
 			long bytesread = skipFrames((long) ((bytes * 1.0f / byteslength * 1.0f) * frameslength));
 			currentByte = currentByte + bytesread;
 			m_header = null;
+			if(m_firstHeader != null) m_decoder.seek_notify(currentFrame * m_firstHeader.samples_per_frame());
+			dropDecodedAhead();
 			return bytesread;
 		}
 		return -1;
 	}
 
+	/** With decode-ahead, drops the bytes decoded ahead, since a skip counts from the last frame decoded. */
+	private void dropDecodedAhead(){
+		if(m_executor != null) m_circularBuffer.clear();
+	}
+
+	/**
+	 * Enables or disables gapless decoding, before the first read. The encoder delay and padding given by the LAME extension of the Xing or Info header
+	 * are then left out, times are counted from the first sample of the source and the frame length is the exact number of samples of the source.
+	 */
+	public synchronized void setGapless(boolean gapless){
+		m_decoder.setGapless(gapless);
+		long samples = m_firstHeader != null ? m_firstHeader.gapless_samples() : -1;
+		frameLength = gapless && samples >= 0 ? samples : AudioSystem.NOT_SPECIFIED;
+	}
+
+	/**
+	 * Seeks to a time in the stream. With a frame index and a seekable source, the decoder is primed with the frames before and the output starts
+	 * exactly at the sample of the time. Otherwise the offset of the target frame is interpolated from the table of contents of the Xing or VBRI
+	 * header, else computed from the bitrate of a CBR stream, and a seekable source moves there and resyncs at the next frame. Failing that, the
+	 * frames before the target are read, which unseekable streams can only do forward.
+	 * @param microseconds The time from the start of the stream.
+	 * @return The time reached in microseconds, or -1 if the stream can't seek to the time.
+	 */
+	public synchronized long seekMicroseconds(long microseconds){
+		Header h = m_firstHeader;
+		if(h == null) return -1;
+		microseconds = Math.max(microseconds, 0);
+		if(m_seekable && m_index != null && m_index.frames() > 0) return seekToSample(microseconds * m_index.frequency() / 1000000L);
+		long frame = (long) (microseconds / 1000000.0 * h.frequency() / h.samples_per_frame()), offset = -1;
+		if(frameslength > 0){
+			frame = Math.min(frame, frameslength - 1);
+			if(h.vbr()) offset = h.vbr_toc_offset((double) frame / frameslength);
+		}
+		if(offset >= 0) offset += m_firstFrame;
+		else if(!h.vbr()) offset = m_firstFrame + (long) (frame * h.samples_per_frame() / 8.0 * h.bitrate() / h.frequency());
+		try{
+			if(m_seekable && offset >= 0){
+				// The frame is parsed now to resync at the first header after the offset.
+				m_bitstream.seek(offset);
+				m_header = m_bitstream.readFrame();
+				currentByte = offset - m_firstFrame;
+			}else{
+				if(frame < currentFrame){
+					if(!m_seekable) return -1;
+					m_bitstream.seek(m_firstFrame);
+					currentFrame = 0;
+					currentByte = 0;
+				}
+				// A pending frame is read again by skipFrames, so it's skipped too.
+				currentByte += skipFrames(frame - currentFrame);
+				m_header = null;
+			}
+		}catch(BitstreamException e){
+			System.err.println(e);
+			return -1;
+		}
+		currentFrame = frame;
+		currentMicrosecond = (long) (frame * h.ms_per_frame() * 1000.0f);
+		m_decoder.seek_notify(frame * h.samples_per_frame());
+		m_circularBuffer.clear();
+		return currentMicrosecond;
+	}
+
+	/** Seeks exactly to a sample with the frame index, returning the time reached in microseconds or -1. */
+	private long seekToSample(long sample){
+		try{
+			m_decoder.seekToSample(m_bitstream, m_index, sample);
+			int frame = m_index.frameAtSample(m_decoder.getSamplePosition());
+			m_oBuffer.clear_buffer();
+			m_circularBuffer.clear();
+			m_header = null;
+			currentFrame = frame;
+			currentByte = m_index.offset(frame) - m_firstFrame;
+			currentMicrosecond = Math.min(sample, m_index.samples()) * 1000000L / m_index.frequency();
+			return currentMicrosecond;
+		}catch(BitstreamException | DecoderException e){
+			System.err.println(e);
+			return -1;
+		}
+	}
+
 	/**
 	 * Skip frames. You don't need to call it severals times, it will exactly skip given frames number.
 	 * @param frames The frame number to skip.
 	 * @return Bytes length skipped matching to frames skipped.
 	 */
-	public long skipFrames(long frames){
+	public synchronized long skipFrames(long frames){
 		int framesRead = 0, bytesReads = 0;
 		try{
 			for(int i = 0; i < frames; i++){
@@ -232,176 +598,23 @@ public class MpegAudioInputStream extends AudioInputStream implements TagParseLi
 	}
 
 	public void close() throws IOException{
+		// Not synchronized, so closing the encoded stream can unblock a worker waiting for its bytes.
+		m_closed = true;
 		m_circularBuffer.close();
 		m_encodedStream.close();
+		wakeReader();
 	}
 
 	public void tagParsed(TagParseEvent tpe){
 		System.out.println("TAG:" + tpe.getTag());
 	}
 
-	private class DMAISObuffer implements Obuffer{
-		private int m_nChannels;
-		private byte[] m_abBuffer;
-		private int[] m_anBufferPointers;
-		private boolean m_bIsBigEndian;
-
-		public DMAISObuffer(int nChannels){
-			m_nChannels = nChannels;
-			m_abBuffer = new byte[OBUFFERSIZE * nChannels];
-			m_anBufferPointers = new int[nChannels];
-			reset();
-			m_bIsBigEndian = MpegAudioInputStream.this.getFormat().isBigEndian();
-		}
-
-		public void append(int nChannel, short sValue){
-			byte bFirstByte, bSecondByte;
-			if(m_bIsBigEndian){
-				bFirstByte = (byte) ((sValue >>> 8) & 0xFF);
-				bSecondByte = (byte) (sValue & 0xFF);
-			}else{ // little endian
-				bFirstByte = (byte) (sValue & 0xFF);
-				bSecondByte = (byte) ((sValue >>> 8) & 0xFF);
-			}
-			m_abBuffer[m_anBufferPointers[nChannel]] = bFirstByte;
-			m_abBuffer[m_anBufferPointers[nChannel] + 1] = bSecondByte;
-			m_anBufferPointers[nChannel] += m_nChannels * 2;
-		}
-
-		public void appendSamples(int channel, float[] f){
-			for(int c = 0; c < 32;){
-				float sample = f[c++];
-				// Clip Sample to 16 Bits.
-				append(channel, sample > 32767.0f ? 32767 : sample < -32768.0f ? -32768 : (short) sample); 
-			}
-		}
-
-		public void clear_buffer(){
-		}
-
-		public byte[] getBuffer(){
-			return m_abBuffer;
-		}
-
-		public int getCurrentBufferSize(){
-			return m_anBufferPointers[0];
-		}
-
-		public void reset(){
-			for(int i = 0; i < m_nChannels; i++){
-				/* Points to byte location, implicitely assuming 16 bit samples. */
-				m_anBufferPointers[i] = i * 2;
-			}
-		}
-	}
-
-	/*
-	 *	TCircularBuffer.java
-	 *
-	 *	This file WAS part of Tritonus: http://www.tritonus.org/
-	 *
-	 *  Copyright (c) 1999 by Matthias Pfisterer
-	 *
-	 *   This program is free software; you can redistribute it and/or modify
-	 *   it under the terms of the GNU Library General Public License as published
-	 *   by the Free Software Foundation; either version 2 of the License, or
-	 *   (at your option) any later version.
-	 *
-	 *   This program is distributed in the hope that it will be useful,
-	 *   but WITHOUT ANY WARRANTY; without even the implied warranty of
-	 *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
-	 *   GNU Library General Public License for more details.
-	 *
-	 *   You should have received a copy of the GNU Library General Public
-	 *   License along with this program; if not, write to the Free Software
-	 *   Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
-	 */
-	private class TCircularBuffer{
-		private final int m_nSize = 327670;
-		private byte[] m_abData;
-		private long m_lReadPos;
-		private long m_lWritePos;
-		private MpegAudioInputStream m_trigger;
-		private boolean m_bOpen;
-
-		public TCircularBuffer(MpegAudioInputStream trigger){
-			m_abData = new byte[m_nSize];
-			m_trigger = trigger;
-			m_bOpen = true;
-		}
-
-		public void close(){
-			m_bOpen = false;
-		}
-
-		public int availableRead(){
-			return (int) (m_lWritePos - m_lReadPos);
-		}
-
-		public int availableWrite(){
-			return m_nSize - availableRead();
-		}
-
-		public int read(byte[] abData, int nOffset, int nLength){
-			if(!m_bOpen){
-				if(availableRead() > 0){
-					nLength = Math.min(nLength, availableRead());
-				}else{
-					System.err.println("< not open. returning -1.");
-					return -1;
-				}
-			}
-			synchronized(this){
-				if(m_trigger != null && availableRead() < nLength) m_trigger.execute();
-				nLength = Math.min(availableRead(), nLength);
-				int nRemainingBytes = nLength;
-				while(nRemainingBytes > 0){
-					while(availableRead() == 0){
-						try{
-							wait();
-						}catch(InterruptedException e){
-							System.err.println(e);
-						}
-					}
-					int nAvailable = Math.min(availableRead(), nRemainingBytes);
-					while(nAvailable > 0){
-						int nToRead = Math.min(nAvailable, m_nSize - ((int) (m_lReadPos % m_nSize)));
-						System.arraycopy(m_abData, (int) (m_lReadPos % m_nSize), abData, nOffset, nToRead);
-						m_lReadPos += nToRead;
-						nOffset += nToRead;
-						nAvailable -= nToRead;
-						nRemainingBytes -= nToRead;
-					}
-					notifyAll();
-				}
-				return nLength;
-			}
-		}
-
-		public int write(byte[] abData, int nOffset, int nLength){
-			synchronized(this){
-				int nRemainingBytes = nLength;
-				while(nRemainingBytes > 0){
-					while(availableWrite() == 0){
-						try{
-							wait();
-						}catch(InterruptedException e){
-							System.err.println(e);
-						}
-					}
-					int nAvailable = Math.min(availableWrite(), nRemainingBytes);
-					while(nAvailable > 0){
-						int nToWrite = Math.min(nAvailable, m_nSize - ((int) (m_lWritePos % m_nSize)));
-						System.arraycopy(abData, nOffset, m_abData, (int) (m_lWritePos % m_nSize), nToWrite);
-						m_lWritePos += nToWrite;
-						nOffset += nToWrite;
-						nAvailable -= nToWrite;
-						nRemainingBytes -= nToWrite;
-					}
-					notifyAll();
-				}
-				return nLength;
-			}
-		}
+	/** Shared executor of the decode-ahead workers, created on first use. */
+	private static final class DecodeAheadPool{
+		static final Executor EXECUTOR = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "jmp3dec decode-ahead");
+			t.setDaemon(true);
+			return t;
+		});
 	}
 }
\ No newline at end of file
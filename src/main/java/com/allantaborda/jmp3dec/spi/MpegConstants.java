@@ -16,6 +16,7 @@ public interface MpegConstants{
 	Encoding MPEG2L3 = new Encoding("MPEG2L3");
 	Encoding MPEG2DOT5L3 = new Encoding("MPEG2DOT5L3");
 	Encoding PCM = Encoding.PCM_SIGNED;
+	Encoding PCM_FLOAT = Encoding.PCM_FLOAT;
 	Type MP1 = new Type("MP1", "mp1");
 	Type MP2 = new Type("MP2", "mp2");
 	Type MP3 = new Type("MP3", "mp3");
@@ -23,6 +23,7 @@
 
 package com.allantaborda.jmp3dec.spi;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import javax.sound.sampled.AudioFormat;
@@ -32,7 +33,7 @@ import javax.sound.sampled.spi.FormatConversionProvider;
 /** ConversionProvider for MPEG files. */
 public class MpegFormatConversionProvider extends FormatConversionProvider implements MpegConstants{
 	private static final AudioFormat.Encoding[] srcEnc = {MPEG1L3, MPEG2L3, MPEG2DOT5L3, MPEG1L2, MPEG2L2, MPEG2DOT5L2, MPEG1L1, MPEG2L1, MPEG2DOT5L1};
-	private static final AudioFormat.Encoding[] trgEnc = {PCM};
+	private static final AudioFormat.Encoding[] trgEnc = {PCM, PCM_FLOAT};
 	private static final AudioFormat[] SOURCE_FORMATS;
 	private static final List<AudioFormat.Encoding> encs = Arrays.asList(srcEnc);
 
@@ -61,12 +62,21 @@ public class MpegFormatConversionProvider extends FormatConversionProvider imple
 	}
 
 	public AudioFormat[] getTargetFormats(AudioFormat.Encoding trgEnc, AudioFormat srcFormat){
-		if(!encs.contains(srcFormat.getEncoding()) || !PCM.equals(trgEnc) || srcFormat.getChannels() > 2 || srcFormat.getChannels() < 1) return new AudioFormat[0];
-		return new AudioFormat[]{new AudioFormat(PCM, -1.0F, 16, srcFormat.getChannels(), srcFormat.getChannels() * 2, -1.0F, false)};
+		int channels = srcFormat.getChannels();
+		if(!encs.contains(srcFormat.getEncoding()) || !(PCM.equals(trgEnc) || PCM_FLOAT.equals(trgEnc)) || channels > 2 || channels < 1) return new AudioFormat[0];
+		// Integer samples of 16, 24 or 32 bits, or float samples of 32 bits, which aren't clipped.
+		List<AudioFormat> formats = new ArrayList<>();
+		for(int bits : PCM.equals(trgEnc) ? new int[]{16, 24, 32} : new int[]{32}){
+			formats.add(new AudioFormat(trgEnc, -1.0F, bits, channels, channels * bits / 8, -1.0F, false));
+			// Stereo streams can also be decoded to their mono downmix.
+			if(channels == 2) formats.add(new AudioFormat(trgEnc, -1.0F, bits, 1, bits / 8, -1.0F, false));
+		}
+		return formats.toArray(new AudioFormat[0]);
 	}
 
 	public AudioInputStream getAudioInputStream(AudioFormat.Encoding trgEnc, AudioInputStream srcStream){
-		return getAudioInputStream(new AudioFormat(trgEnc, -1.0F, 16, srcStream.getFormat().getChannels(), srcStream.getFormat().getChannels() * 2, -1.0F, false), srcStream);
+		int bits = PCM_FLOAT.equals(trgEnc) ? 32 : 16, channels = srcStream.getFormat().getChannels();
+		return getAudioInputStream(new AudioFormat(trgEnc, -1.0F, bits, channels, channels * bits / 8, -1.0F, false), srcStream);
 	}
 
 	public AudioInputStream getAudioInputStream(AudioFormat trgFormat, AudioInputStream srcStream){
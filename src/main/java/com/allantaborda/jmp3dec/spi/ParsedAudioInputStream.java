@@ -0,0 +1,86 @@
+package com.allantaborda.jmp3dec.spi;
+
+import com.allantaborda.jmp3dec.decoder.Bitstream;
+import com.allantaborda.jmp3dec.decoder.Header;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Encoded stream returned by <code>MpegAudioFileReader</code>, which keeps the bitstream it parsed, left after the first frame, so a
+ * <code>MpegAudioInputStream</code> decodes from there without parsing the ID3v2 tag and the first frame again. The encoded stream is left where
+ * the bitstream read it until it's read itself: then it's reset to its start and the bitstream is dropped.
+ */
+final class ParsedAudioInputStream extends AudioInputStream{
+	private final InputStream in;
+	/** The bitstream, or null once taken or dropped, and the header of its first frame. */
+	private Bitstream bitstream;
+	final Header header;
+	/** The bytes available from the start of the stream. */
+	final long length;
+
+	ParsedAudioInputStream(InputStream in, AudioFormat format, long frames, long length, Bitstream bitstream, Header header){
+		super(in, format, frames);
+		this.in = in;
+		this.length = length;
+		this.bitstream = bitstream;
+		this.header = header;
+	}
+
+	/** Returns the stream if it's a parsed stream whose bitstream can still be taken, else null. */
+	static ParsedAudioInputStream of(AudioInputStream stream){
+		if(!(stream instanceof ParsedAudioInputStream) || ((ParsedAudioInputStream) stream).bitstream == null) return null;
+		return (ParsedAudioInputStream) stream;
+	}
+
+	/** Takes the bitstream, which then reads the stream. The stream won't be reset, so its mark is dropped, freeing the bytes kept for it. */
+	Bitstream take(){
+		Bitstream b = bitstream;
+		bitstream = null;
+		in.mark(0);
+		return b;
+	}
+
+	/** Drops the bitstream, moving the stream back to its start. */
+	private void release() throws IOException{
+		if(bitstream != null){
+			bitstream = null;
+			in.reset();
+		}
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException{
+		release();
+		return super.read(b, off, len);
+	}
+
+	@Override
+	public long skip(long n) throws IOException{
+		release();
+		return super.skip(n);
+	}
+
+	@Override
+	public int available() throws IOException{
+		release();
+		return super.available();
+	}
+
+	@Override
+	public void mark(int readlimit){
+		try{
+			release();
+		}catch(IOException e){
+			// The mark is then set where the bitstream left the stream.
+		}
+		super.mark(readlimit);
+	}
+
+	@Override
+	public void reset() throws IOException{
+		release();
+		super.reset();
+	}
+}
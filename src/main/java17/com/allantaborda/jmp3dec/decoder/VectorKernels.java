@@ -0,0 +1,98 @@
+package com.allantaborda.jmp3dec.decoder;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels of the decoder computed with the vector API, for Java 17 and later. They're enabled when the module <code>jdk.incubator.vector</code> is
+ * in the module graph (as with <code>--add-modules jdk.incubator.vector</code>), the vectors of the platform hold at least 8 floats and the system
+ * property <code>jmp3dec.vector</code> isn't <code>false</code>. Each lane makes the same operations, in the same order, as the loops they replace,
+ * so the samples are the same.
+ */
+final class VectorKernels{
+	/** True if the kernels can be used. */
+	static final boolean ENABLED = enabled();
+
+	private VectorKernels(){}
+
+	private static boolean enabled(){
+		if(!Boolean.parseBoolean(System.getProperty("jmp3dec.vector", "true"))) return false;
+		if(!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) return false;
+		try{
+			return Kernels.enabled();
+		}catch(LinkageError e){
+			return false;
+		}
+	}
+
+	/** Creates the synthesis engine whose window is computed with vectors. */
+	static SynthesisEngine synthesis_engine(){
+		return new VectorSynthesisEngine();
+	}
+
+	/** Applies the 8 alias-reduction butterflies between each pair of subbands up to line <code>sb18lim</code>. */
+	static void antialias(float[] x, int sb18lim){
+		Kernels.antialias(x, sb18lim);
+	}
+
+	/** Requantizes the lines from <code>from</code> to <code>to</code> of a band: line j is sign(is[j]) * |is[j]|^(4/3) * gain. */
+	static void dequantize_lines(float[] xr, int[] is, int from, int to, float gain){
+		Kernels.dequantize_lines(xr, is, from, to, gain);
+	}
+
+	/** The kernels, in their own class so the vector classes are only loaded once the module is known to be there. */
+	static final class Kernels{
+		/**
+		 * The species of all the kernels, with 8 lanes, one for each butterfly. Wider vectors were slower for the window with Java 17 on AVX-512, and
+		 * their gather crashed the JIT-compiled code.
+		 */
+		private static final VectorSpecies<Float> F = FloatVector.SPECIES_256;
+		private static final VectorShuffle<Float> REVERSE = VectorShuffle.fromOp(F, i -> 7 - i);
+		private static final FloatVector CS = FloatVector.fromArray(F, LayerIIIDecoder.cs, 0), CA = FloatVector.fromArray(F, LayerIIIDecoder.ca, 0);
+		/** Offset of the value 0 in <code>SIGNED_POW43</code>. */
+		private static final int ZERO = LayerIIIDecoder.t_43.length - 1;
+		/** Signed powers 4/3: the value of v is at <code>ZERO + v</code>, so a line is requantized by a gather indexed by its value. */
+		private static final float[] SIGNED_POW43 = new float[2 * ZERO + 1];
+
+		static{
+			for(int v = 0; v <= ZERO; v++){
+				SIGNED_POW43[ZERO + v] = LayerIIIDecoder.t_43[v];
+				SIGNED_POW43[ZERO - v] = -LayerIIIDecoder.t_43[v];
+			}
+		}
+
+		private Kernels(){}
+
+		/** Returns true if the vectors of the platform hold 8 floats or more, so the kernels run on vector instructions. */
+		static boolean enabled(){
+			return FloatVector.SPECIES_PREFERRED.length() >= F.length();
+		}
+
+		static void window(float[] a, float[] d, int t, float scalefactor, float[] out){
+			for(int i = 0; i < 32; i += F.length()){
+				FloatVector sum = FloatVector.fromArray(F, a, t + i).mul(FloatVector.fromArray(F, d, i));
+				for(int j = 32; j < 512; j += 32) sum = sum.add(FloatVector.fromArray(F, a, t - j + i).mul(FloatVector.fromArray(F, d, j + i)));
+				sum.mul(scalefactor).intoArray(out, i);
+			}
+		}
+
+		static void antialias(float[] x, int sb18lim){
+			for(int sb18 = 0; sb18 < sb18lim; sb18 += 18){
+				// Lane ss holds line 17 - ss of the subband, bu, and line ss of the next, bd.
+				FloatVector bu = FloatVector.fromArray(F, x, sb18 + 10).rearrange(REVERSE), bd = FloatVector.fromArray(F, x, sb18 + 18);
+				bu.mul(CS).sub(bd.mul(CA)).rearrange(REVERSE).intoArray(x, sb18 + 10);
+				bd.mul(CS).add(bu.mul(CA)).intoArray(x, sb18 + 18);
+			}
+		}
+
+		static void dequantize_lines(float[] xr, int[] is, int from, int to, float gain){
+			int j = from, bound = from + F.loopBound(to - from);
+			for(; j < bound; j += F.length()) FloatVector.fromArray(F, SIGNED_POW43, ZERO, is, j).mul(gain).intoArray(xr, j);
+			for(; j < to; j++){
+				int v = is[j];
+				xr[j] = v >= 0 ? LayerIIIDecoder.t_43[v] * gain : -(LayerIIIDecoder.t_43[-v] * gain);
+			}
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.allantaborda.jmp3dec.decoder;
+
+/** Rotated synthesis engine whose window is computed with vectors, when all the samples are computed. */
+final class VectorSynthesisEngine extends RotatedSynthesisEngine{
+	@Override
+	void window(float[] a, int t, float scalefactor, int step, float[] out){
+		if(step == 1) VectorKernels.Kernels.window(a, dt, t, scalefactor, out);
+		else super.window(a, t, scalefactor, step, out);
+	}
+}
@@ -0,0 +1,83 @@
+package com.allantaborda.jmp3dec.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.function.Supplier;
+
+/**
+ * Benchmark of the synthesis engines: the reference engine, the rotated engine and the vector engine, which is the reference engine unless the
+ * vector kernels are enabled. Each file given is decoded a number of times with each engine, in turn, and the best CPU time of each is printed;
+ * then the time of a call to each engine alone. The vector kernels are only in the multi-release JAR, so run it from the JAR built on Java 17:
+ * <pre>java --add-modules jdk.incubator.vector -cp target/jmp3dec-0.0.1-SNAPSHOT.jar:target/test-classes
+ * com.allantaborda.jmp3dec.decoder.SynthesisEngineBenchmark [-n runs] file.mp3 ...</pre>
+ * The benchmark sits next to {@link ZeroSubbandsBenchmark}.
+ */
+public class SynthesisEngineBenchmark{
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private static final String[] names = { "reference", "rotated", "vector" };
+	@SuppressWarnings("unchecked")
+	private static final Supplier<SynthesisEngine>[] engines = new Supplier[]{ (Supplier<SynthesisEngine>) SynthesisEngine::reference,
+			(Supplier<SynthesisEngine>) SynthesisEngine::rotated, (Supplier<SynthesisEngine>) SynthesisEngine::vector };
+	/** Calls to an engine in each run of the kernel benchmark. */
+	private static final int CALLS = 200000;
+
+	public static void main(String[] args) throws Exception{
+		int runs = 20, first = 0;
+		if(args.length > 1 && args[0].equals("-n")){
+			runs = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if(first == args.length){
+			System.err.println("Usage: SynthesisEngineBenchmark [-n runs] file.mp3 ...");
+			return;
+		}
+		System.out.println("Vector kernels " + (VectorKernels.ENABLED ? "enabled" : "disabled"));
+		System.out.printf("%-40s %12s %12s %12s%n", "File (ms)", names[0], names[1], names[2]);
+		for(int i = first; i < args.length; i++){
+			byte[] data = Files.readAllBytes(Paths.get(args[i]));
+			long[] best = { Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE };
+			for(int r = 0; r < runs; r++){
+				for(int e = 0; e < engines.length; e++) best[e] = Math.min(best[e], decode(data, engines[e]));
+			}
+			System.out.printf("%-40s %12.2f %12.2f %12.2f%n", args[i], best[0] / 1e6, best[1] / 1e6, best[2] / 1e6);
+		}
+		System.out.printf("%-40s", "Kernel (ns/call)");
+		for(Supplier<SynthesisEngine> engine : engines) System.out.printf(" %12.1f", (double) kernel(engine.get(), runs) / CALLS);
+		System.out.println();
+	}
+
+	/** Decodes a stream with an engine and returns the CPU time taken. */
+	private static long decode(byte[] data, Supplier<SynthesisEngine> engine) throws Exception{
+		long start = threads.getCurrentThreadCpuTime();
+		Decoder.Params params = new Decoder.Params();
+		params.setSynthesisEngine(engine);
+		Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+		Decoder decoder = new Decoder(params);
+		Header header;
+		while((header = stream.readFrame()) != null){
+			decoder.decodeFrame(header, stream);
+			stream.closeFrame();
+		}
+		stream.close();
+		return threads.getCurrentThreadCpuTime() - start;
+	}
+
+	/** Returns the best CPU time of the calls to an engine, each new vector depending on the samples of the last. */
+	private static long kernel(SynthesisEngine engine, int runs){
+		float[] v = new float[32], out = new float[32];
+		for(int i = 0; i < 32; i++) v[i] = (float) Math.sin(i);
+		long best = Long.MAX_VALUE;
+		for(int r = 0; r < runs; r++){
+			long start = threads.getCurrentThreadCpuTime();
+			for(int k = 0; k < CALLS; k++){
+				engine.compute_pcm_samples(v, 32700.0f, 1, out);
+				v[k & 31] += out[k & 31] * 1e-9f;
+			}
+			best = Math.min(best, threads.getCurrentThreadCpuTime() - start);
+		}
+		return best;
+	}
+}
@@ -0,0 +1,59 @@
+package com.allantaborda.jmp3dec.decoder;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Benchmark of the skipping of the zero subbands in the Layer III pipeline. Each file given, such as speech and music encoded at 64 to 128
+ * kbit/s, is decoded a number of times with all the subbands processed and with the zero subbands skipped, alternately, and the best CPU time of
+ * each is printed with the gain. The samples of both are compared too. Run it from the test classes:
+ * <pre>java -cp target/classes:target/test-classes com.allantaborda.jmp3dec.decoder.ZeroSubbandsBenchmark [-n runs] file.mp3 ...</pre>
+ */
+public class ZeroSubbandsBenchmark{
+	private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception{
+		int runs = 20, first = 0;
+		if(args.length > 1 && args[0].equals("-n")){
+			runs = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if(first == args.length){
+			System.err.println("Usage: ZeroSubbandsBenchmark [-n runs] file.mp3 ...");
+			return;
+		}
+		System.out.printf("%-40s %10s %10s %7s  %s%n", "File", "All (ms)", "Skip (ms)", "Gain", "Samples");
+		for(int i = first; i < args.length; i++){
+			byte[] data = Files.readAllBytes(Paths.get(args[i]));
+			long all = Long.MAX_VALUE, skip = Long.MAX_VALUE;
+			long[] sums = new long[2];
+			for(int r = 0; r < runs; r++){
+				all = Math.min(all, decode(data, false, sums, 0));
+				skip = Math.min(skip, decode(data, true, sums, 1));
+			}
+			System.out.printf("%-40s %10.2f %10.2f %6.1f%%  %s%n", args[i], all / 1e6, skip / 1e6, 100.0 * (all - skip) / all,
+					sums[0] == sums[1] ? "same" : "DIFFERENT");
+		}
+	}
+
+	/** Decodes a stream and returns the CPU time taken, keeping a checksum of the samples. */
+	private static long decode(byte[] data, boolean skip_zero, long[] sums, int sum) throws Exception{
+		long start = threads.getCurrentThreadCpuTime(), checksum = 0;
+		Bitstream stream = new Bitstream(new ByteArrayInputStream(data));
+		Decoder decoder = new Decoder();
+		decoder.setSkipZeroSubbands(skip_zero);
+		Header header;
+		while((header = stream.readFrame()) != null){
+			SampleBuffer output = (SampleBuffer) decoder.decodeFrame(header, stream);
+			short[] samples = output.getBuffer();
+			for(int j = 0, n = output.getBufferLength(); j < n; j++) checksum = checksum * 31 + samples[j];
+			stream.closeFrame();
+		}
+		stream.close();
+		sums[sum] = checksum;
+		return threads.getCurrentThreadCpuTime() - start;
+	}
+}